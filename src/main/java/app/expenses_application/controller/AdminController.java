@@ -0,0 +1,85 @@
+package app.expenses_application.controller;
+
+import app.expenses_application.dto.CacheStatistics;
+import app.expenses_application.dto.ExpenseQueueStatistics;
+import app.expenses_application.service.ExpenseSummaryCache;
+import app.expenses_application.service.ExpenseWriteQueue;
+import app.expenses_application.service.IdempotencyStore;
+import app.expenses_application.service.MonthlyRollupService;
+import app.expenses_application.util.CachingUserDetailsService;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller class for administrative maintenance requests.
+ * This class provides endpoints for repairing the precomputed monthly rollups and for monitoring the caches and queues.
+ */
+
+@RestController
+@Slf4j
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final MonthlyRollupService monthlyRollupService;
+    private final ExpenseSummaryCache expenseSummaryCache;
+    private final CachingUserDetailsService userDetailsService;
+    private final ExpenseWriteQueue expenseWriteQueue;
+    private final IdempotencyStore idempotencyStore;
+
+    /**
+     * Recomputes the monthly rollups of one person from the raw expenses.
+     *
+     * @param personId the ID of the person.
+     * @return a ResponseEntity with a success message.
+     */
+    @Operation(summary = "Rebuild monthly rollups of a person")
+    @PostMapping("/rollup/rebuild/{personId}")
+    public ResponseEntity<?> rebuildRollup(@PathVariable final Long personId) {
+        int rows = monthlyRollupService.rebuild(personId);
+        return ResponseEntity.status(HttpStatus.OK).body("{\"message\": \"Rebuilt " + rows + " monthly rollups.\"}");
+    }
+
+    /**
+     * Recomputes the monthly rollups of every person from the raw expenses.
+     *
+     * @return a ResponseEntity with a success message.
+     */
+    @Operation(summary = "Rebuild monthly rollups of all persons")
+    @PostMapping("/rollup/rebuild")
+    public ResponseEntity<?> rebuildAllRollups() {
+        int persons = monthlyRollupService.rebuildAll();
+        return ResponseEntity.status(HttpStatus.OK).body("{\"message\": \"Rebuilt monthly rollups of " + persons + " persons.\"}");
+    }
+
+    /**
+     * Retrieves the size and the hit rate of the expense summary cache, the principal cache and the idempotency keys.
+     *
+     * @return a ResponseEntity with the statistics of every cache.
+     */
+    @Operation(summary = "Get cache statistics")
+    @GetMapping("/cache/stats")
+    public ResponseEntity<List<CacheStatistics>> getCacheStatistics() {
+        return ResponseEntity.ok(List.of(
+                CacheStatistics.of("expenseSummaries", expenseSummaryCache.size(), expenseSummaryCache.stats()),
+                CacheStatistics.of("principals", userDetailsService.size(), userDetailsService.stats()),
+                CacheStatistics.of("idempotencyKeys", idempotencyStore.size(), idempotencyStore.stats())));
+    }
+
+    /**
+     * Retrieves the depth of the write-behind expense queue and its counters.
+     *
+     * @return a ResponseEntity with the queue statistics.
+     */
+    @Operation(summary = "Get expense queue statistics")
+    @GetMapping("/queue/stats")
+    public ResponseEntity<ExpenseQueueStatistics> getQueueStatistics() {
+        return ResponseEntity.ok(expenseWriteQueue.statistics());
+    }
+}
@@ -1,23 +1,50 @@
 package app.expenses_application.controller;
 
+import app.expenses_application.dto.DateRange;
+import app.expenses_application.dto.ExpenseBatchRequest;
 import app.expenses_application.dto.ExpenseRequest;
+import app.expenses_application.dto.ExpenseSearchCriteria;
+import app.expenses_application.dto.ExpenseTotal;
+import app.expenses_application.dto.ExpenseView;
+import app.expenses_application.exception.ExpenseQueueFullException;
+import app.expenses_application.exception.InvalidCursorException;
 import app.expenses_application.exception.MandatoryFieldsMissingException;
-import app.expenses_application.exception.NoCategoriesFoundException;
 import app.expenses_application.exception.NoExpensesFoundException;
 import app.expenses_application.exception.NoPersonFoundException;
+import app.expenses_application.exception.NoQueuedExpenseFoundException;
+import app.expenses_application.model.Category;
 import app.expenses_application.model.Expense;
+import app.expenses_application.model.ExpenseSort;
+import app.expenses_application.model.Granularity;
 import app.expenses_application.service.DataMappingService;
+import app.expenses_application.service.ExpenseBatchService;
 import app.expenses_application.service.ExpenseService;
+import app.expenses_application.service.ExpenseWriteQueue;
+import app.expenses_application.util.ExpenseVersionRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Controller class for handling expense-related requests.
@@ -32,25 +59,77 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class ExpenseController {
 
+	private static final byte[] CATEGORIES_JSON = Arrays.stream(Category.values())
+			.map(category -> "\"" + category.name() + "\"")
+			.collect(Collectors.joining(",", "[", "]"))
+			.getBytes(StandardCharsets.UTF_8);
+	private static final String CATEGORIES_ETAG = "\"" + DigestUtils.md5DigestAsHex(CATEGORIES_JSON) + "\"";
+	private static final CacheControl CATEGORIES_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).cachePublic();
+	private static final CacheControl EXPENSES_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
 	private final ExpenseService expenseService;
 	private final DataMappingService dataMappingService;
+	private final ExpenseBatchService expenseBatchService;
+	private final ExpenseWriteQueue expenseWriteQueue;
+	private final ExpenseVersionRegistry expenseVersionRegistry;
+
+	@Value("${expense.batch.max-size:1000}")
+	private int maxBatchSize;
 
 	/**
 	 * Adds a new expense.
+	 * With the write-behind queue enabled the expense is only validated and queued, and 202 is returned with the ID to poll.
 	 *
 	 * @param request the expense request containing the expense details and person ID.
-	 * @return a ResponseEntity with a success message.
+	 * @return a ResponseEntity with a success message, or with the status of the queued write.
 	 * @throws MandatoryFieldsMissingException if mandatory fields are missing.
 	 * @throws NoPersonFoundException if the person is not found.
+	 * @throws ExpenseQueueFullException if the write-behind queue is full.
 	 */
 	@Operation(summary = "Add new expense")
 	@PostMapping("/add")
-	public ResponseEntity<?> addExpense(@RequestBody final ExpenseRequest request) throws MandatoryFieldsMissingException, NoPersonFoundException {
+	public ResponseEntity<?> addExpense(@RequestBody final ExpenseRequest request)
+			throws MandatoryFieldsMissingException, NoPersonFoundException, ExpenseQueueFullException {
+		if (expenseWriteQueue.isEnabled()) {
+			return ResponseEntity.status(HttpStatus.ACCEPTED).body(expenseWriteQueue.enqueue(request.getPersonId(), request.getExpense()));
+		}
 		dataMappingService.setPersonIdToExpense(request.getExpense(), request.getPersonId());
 		expenseService.add(request.getExpense());
 		return ResponseEntity.status(HttpStatus.OK).body("{\"message\": \"Expense added successfully.\"}");
 	}
 
+	/**
+	 * Retrieves the state of an expense added through the write-behind queue.
+	 *
+	 * @param writeId the ID returned when the expense was queued.
+	 * @return a ResponseEntity containing the state of the write and, once committed, the ID of the expense.
+	 * @throws NoQueuedExpenseFoundException if no write is known with the given ID.
+	 */
+	@Operation(summary = "Get the state of a queued expense")
+	@GetMapping("/add/status/{writeId}")
+	public ResponseEntity<?> getAddStatus(@PathVariable final String writeId) throws NoQueuedExpenseFoundException {
+		return ResponseEntity.ok(expenseWriteQueue.getStatus(writeId));
+	}
+
+	/**
+	 * Adds many expenses of one person at once, e.g. from a bank statement.
+	 *
+	 * @param request the batch request containing the expenses and person ID.
+	 * @return a ResponseEntity with the number and IDs of the added expenses and the errors of the rejected ones.
+	 * @throws MandatoryFieldsMissingException if the expenses are missing or more than the configured maximum.
+	 * @throws NoPersonFoundException if the person is not found.
+	 */
+	@Operation(summary = "Add many expenses at once")
+	@PostMapping("/addBatch")
+	public ResponseEntity<?> addExpenses(@RequestBody final ExpenseBatchRequest request) throws MandatoryFieldsMissingException, NoPersonFoundException {
+		List<Expense> expenses = request.getExpenses();
+		if (expenses == null || expenses.size() > maxBatchSize) {
+			log.error("Rejected a batch of {} expenses for person ID {}", expenses == null ? 0 : expenses.size(), request.getPersonId());
+			throw new MandatoryFieldsMissingException("A batch must contain at most " + maxBatchSize + " expenses.");
+		}
+		return ResponseEntity.ok(expenseBatchService.addAll(request.getPersonId(), expenses));
+	}
+
 	/**
 	 * Deletes an expense by its ID.
 	 *
@@ -67,46 +146,260 @@ public class ExpenseController {
 
 	/**
 	 * Retrieves all expenses for a specific person.
+	 * The response carries an ETag of the person's data version. A request whose If-None-Match still matches it is
+	 * answered with 304 without querying the expenses.
 	 *
 	 * @param personId the ID of the person whose expenses are to be retrieved.
-	 * @return a ResponseEntity containing a list of expenses for the specified person.
+	 * @param request  the web request, used to evaluate If-None-Match.
+	 * @return a ResponseEntity containing a list of expenses for the specified person, or null if it was not modified.
 	 * @throws NoExpensesFoundException if no expenses are found for the specified person.
 	 */
 
 	@Operation(summary = "Get all expenses for a person")
 	@GetMapping("/getAll/{personId}")
-	public ResponseEntity<?> getAll(@PathVariable final Long personId) throws NoExpensesFoundException, NoPersonFoundException {
+	public ResponseEntity<?> getAll(@PathVariable final Long personId, final ServletWebRequest request) throws NoExpensesFoundException, NoPersonFoundException {
+		if (notModified(request, expenseVersionRegistry.etag(personId), EXPENSES_CACHE_CONTROL)) {
+			return null;
+		}
 		return ResponseEntity.status(HttpStatus.OK).body(expenseService.getAll(personId));
 	}
 
+	/**
+	 * Retrieves one page of expenses for a specific person, newest first.
+	 *
+	 * @param personId     the ID of the person whose expenses are to be retrieved.
+	 * @param cursor       the continuation token returned with the previous page, omitted for the first page.
+	 * @param size         the page size.
+	 * @param includeTotal whether the total number of expenses should be returned as well.
+	 * @return a ResponseEntity containing the page of expenses and the token of the next page.
+	 * @throws InvalidCursorException if the continuation token is malformed.
+	 */
+	@Operation(summary = "Get a page of expenses for a person")
+	@GetMapping("/getAll/{personId}/page")
+	public ResponseEntity<?> getPage(@PathVariable final Long personId,
+									 @RequestParam(required = false) final String cursor,
+									 @RequestParam(required = false) final Integer size,
+									 @RequestParam(defaultValue = "false") final boolean includeTotal) throws InvalidCursorException {
+		return ResponseEntity.ok(expenseService.getPage(personId, null, cursor, size, includeTotal));
+	}
+
+	/**
+	 * Searches the expenses of a specific person with any combination of filters, one page at a time.
+	 *
+	 * @param personId    the ID of the person whose expenses are to be searched.
+	 * @param from        the first date, inclusive, or omitted.
+	 * @param to          the last date, inclusive, or omitted.
+	 * @param category    the categories, repeated for several, or omitted for all.
+	 * @param minPrice    the lowest price, inclusive, or omitted.
+	 * @param maxPrice    the highest price, inclusive, or omitted.
+	 * @param description a text the description must contain, ignoring case, or omitted.
+	 * @param sort        the sort order, newest first by default.
+	 * @param cursor      the continuation token returned with the previous page, omitted for the first page.
+	 * @param size        the page size.
+	 * @return a ResponseEntity containing the page of matching expenses and the token of the next page.
+	 * @throws InvalidCursorException if the continuation token is malformed.
+	 */
+	@Operation(summary = "Search expenses of a person")
+	@GetMapping("/search/{personId}")
+	public ResponseEntity<?> search(@PathVariable final Long personId,
+									@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+									@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to,
+									@RequestParam(required = false) final Set<Category> category,
+									@RequestParam(required = false) final Double minPrice,
+									@RequestParam(required = false) final Double maxPrice,
+									@RequestParam(required = false) final String description,
+									@RequestParam(defaultValue = "DATE_DESC") final ExpenseSort sort,
+									@RequestParam(required = false) final String cursor,
+									@RequestParam(required = false) final Integer size) throws InvalidCursorException {
+		ExpenseSearchCriteria criteria = ExpenseSearchCriteria.builder()
+				.personId(personId)
+				.startDate(from)
+				.endDate(to)
+				.categories(category)
+				.minPrice(minPrice)
+				.maxPrice(maxPrice)
+				.description(description)
+				.sort(sort)
+				.build();
+		return ResponseEntity.ok(expenseService.search(criteria, cursor, size));
+	}
+
+	/**
+	 * Searches the descriptions of a specific person's expenses, e.g. for "netflix" or "vet".
+	 *
+	 * @param personId the ID of the person whose expenses are to be searched.
+	 * @param q        the search text. Every word also matches longer words it starts.
+	 * @param limit    the maximum number of expense IDs.
+	 * @return a ResponseEntity containing the IDs of the matching expenses, most relevant first.
+	 */
+	@Operation(summary = "Search expense descriptions of a person")
+	@GetMapping("/search/{personId}/text")
+	public ResponseEntity<List<Long>> searchDescriptions(@PathVariable final Long personId,
+														 @RequestParam final String q,
+														 @RequestParam(required = false) final Integer limit) {
+		return ResponseEntity.ok(expenseService.searchDescriptions(personId, q, limit));
+	}
 
 	/**
 	 * Retrieves all expense categories.
+	 * The categories only change with a release, so they are served from bytes built once and may be cached for a year.
 	 *
-	 * @return a ResponseEntity containing a list of all categories.
+	 * @param request the web request, used to evaluate If-None-Match.
+	 * @return a ResponseEntity containing the JSON list of all categories, or null if it was not modified.
 	 */
 	@Operation(summary = "Get all categories")
 	@GetMapping("/getAllCategories")
-	public ResponseEntity<List<String>> getAllCategories() throws NoCategoriesFoundException {
-		return ResponseEntity.status(HttpStatus.OK).body(expenseService.getAllCategories());
+	public ResponseEntity<byte[]> getAllCategories(final ServletWebRequest request) {
+		if (notModified(request, CATEGORIES_ETAG, CATEGORIES_CACHE_CONTROL)) {
+			return null;
+		}
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(CATEGORIES_JSON);
 	}
 
 	/**
 	 * Retrieves the total expenses for the current month for a given person.
 	 *
+	 * The response carries an ETag of the person's data version and the month, answered like the one of getAll.
+	 *
 	 * @param personId the ID of the person whose expenses are to be retrieved.
-	 * @return a ResponseEntity containing the total expenses for the current month.
+	 * @param request  the web request, used to evaluate If-None-Match.
+	 * @return a ResponseEntity containing the total expenses for the current month, or null if it was not modified.
 	 * @throws NoExpensesFoundException if no expenses are found for the given person ID.
 	 */
 	@Operation(summary = "Get current month expenses")
 	@GetMapping("/currentMonthTotal/{personId}")
-	public ResponseEntity<?> getCurrentMonthTotalExpenses(@PathVariable final Long personId) throws NoExpensesFoundException {
+	public ResponseEntity<?> getCurrentMonthTotalExpenses(@PathVariable final Long personId, final ServletWebRequest request) throws NoExpensesFoundException {
+		if (notModified(request, expenseVersionRegistry.etag(personId, YearMonth.now()), EXPENSES_CACHE_CONTROL)) {
+			return null;
+		}
 		double total = expenseService.getCurrentMonthTotalExpenses(personId);
 		Map<String, Object> response = new HashMap<>();
 		response.put("total", total);
 		return ResponseEntity.ok(response);
 	}
 
+	/**
+	 * Retrieves the total and the number of expenses of a given person for a month or a date range.
+	 * Either from and to, or year and month can be given. Without any of them the current month is used.
+	 *
+	 * @param personId the ID of the person whose expenses are to be summed.
+	 * @param year     the year of the month, used together with month.
+	 * @param month    the month number (1-12), used together with year.
+	 * @param from     the first day of the range, inclusive.
+	 * @param to       the last day of the range, inclusive.
+	 * @return a ResponseEntity containing the total and the number of expenses.
+	 * @throws NoExpensesFoundException if no expenses are found within the range.
+	 * @throws MandatoryFieldsMissingException if only one bound of the range or of the month is given.
+	 */
+	@Operation(summary = "Get total expenses for a month or a date range")
+	@GetMapping("/total/{personId}")
+	public ResponseEntity<?> getTotalExpenses(@PathVariable final Long personId,
+											  @RequestParam(required = false) final Integer year,
+											  @RequestParam(required = false) final Integer month,
+											  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+											  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to)
+			throws NoExpensesFoundException, MandatoryFieldsMissingException {
+		DateRange range = DateRange.of(year, month, from, to);
+		ExpenseTotal expenseTotal = expenseService.getTotalExpenses(personId, range.getStartDate(), range.getEndDate());
+		Map<String, Object> response = new HashMap<>();
+		response.put("total", expenseTotal.getTotal());
+		response.put("count", expenseTotal.getCount());
+		return ResponseEntity.ok(response);
+	}
+
+	/**
+	 * Retrieves the total, the number and the average price of expenses per category for a month or a date range.
+	 * Either from and to, or year and month can be given. Without any of them the current month is used.
+	 *
+	 * @param personId the ID of the person whose expenses are to be aggregated.
+	 * @param year     the year of the month, used together with month.
+	 * @param month    the month number (1-12), used together with year.
+	 * @param from     the first day of the range, inclusive.
+	 * @param to       the last day of the range, inclusive.
+	 * @return a ResponseEntity containing one entry per category that has expenses.
+	 * @throws NoExpensesFoundException if no expenses are found within the range.
+	 * @throws MandatoryFieldsMissingException if only one bound of the range or of the month is given.
+	 */
+	@Operation(summary = "Get expenses breakdown by category")
+	@GetMapping("/breakdown/{personId}")
+	public ResponseEntity<?> getCategoryBreakdown(@PathVariable final Long personId,
+												  @RequestParam(required = false) final Integer year,
+												  @RequestParam(required = false) final Integer month,
+												  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+												  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to)
+			throws NoExpensesFoundException, MandatoryFieldsMissingException {
+		DateRange range = DateRange.of(year, month, from, to);
+		return ResponseEntity.ok(expenseService.getCategoryBreakdown(personId, range.getStartDate(), range.getEndDate()));
+	}
+
+	/**
+	 * Retrieves the most expensive expenses of a given person for a month or a date range.
+	 * Either from and to, or year and month can be given. Without any of them the current month is used.
+	 *
+	 * @param personId the ID of the person whose expenses are to be retrieved.
+	 * @param year     the year of the month, used together with month.
+	 * @param month    the month number (1-12), used together with year.
+	 * @param from     the first day of the range, inclusive.
+	 * @param to       the last day of the range, inclusive.
+	 * @param limit    the maximum number of expenses, optional.
+	 * @return a ResponseEntity containing the most expensive expenses, the most expensive first.
+	 * @throws NoExpensesFoundException if no expenses are found within the range.
+	 * @throws MandatoryFieldsMissingException if only one bound of the range or of the month is given.
+	 */
+	@Operation(summary = "Get the most expensive expenses for a month or a date range")
+	@GetMapping("/top/{personId}")
+	public ResponseEntity<?> getTopExpenses(@PathVariable final Long personId,
+											@RequestParam(required = false) final Integer year,
+											@RequestParam(required = false) final Integer month,
+											@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+											@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to,
+											@RequestParam(required = false) final Integer limit)
+			throws NoExpensesFoundException, MandatoryFieldsMissingException {
+		DateRange range = DateRange.of(year, month, from, to);
+		return ResponseEntity.ok(expenseService.getTopExpenses(personId, range.getStartDate(), range.getEndDate(), limit));
+	}
+
+	/**
+	 * Retrieves the total and the number of expenses of a person per year.
+	 *
+	 * @param personId the ID of the person whose expenses are to be aggregated.
+	 * @return a ResponseEntity containing one entry per year that has expenses.
+	 * @throws NoExpensesFoundException if the person has no expenses.
+	 */
+	@Operation(summary = "Get yearly expense totals")
+	@GetMapping("/yearly/{personId}")
+	public ResponseEntity<?> getYearTotals(@PathVariable final Long personId) throws NoExpensesFoundException {
+		return ResponseEntity.ok(expenseService.getYearTotals(personId));
+	}
+
+	/**
+	 * Retrieves the spending series of a person, bucketed by day, ISO week or month, for a month or a date range.
+	 * Either from and to, or year and month can be given. Without any of them the current month is used.
+	 *
+	 * @param personId    the ID of the person whose expenses are to be aggregated.
+	 * @param granularity the bucket size, DAY, WEEK or MONTH.
+	 * @param byCategory  whether every bucket should also contain the totals of all categories.
+	 * @param year        the year of the month, used together with month.
+	 * @param month       the month number (1-12), used together with year.
+	 * @param from        the first day of the range, inclusive.
+	 * @param to          the last day of the range, inclusive.
+	 * @return a ResponseEntity containing one point per bucket, empty buckets included.
+	 * @throws MandatoryFieldsMissingException if the range is incomplete or reversed.
+	 */
+	@Operation(summary = "Get spending series by day, week or month")
+	@GetMapping("/series/{personId}")
+	public ResponseEntity<?> getSpendingSeries(@PathVariable final Long personId,
+											   @RequestParam(defaultValue = "DAY") final Granularity granularity,
+											   @RequestParam(defaultValue = "false") final boolean byCategory,
+											   @RequestParam(required = false) final Integer year,
+											   @RequestParam(required = false) final Integer month,
+											   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+											   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to)
+			throws MandatoryFieldsMissingException {
+		DateRange range = DateRange.of(year, month, from, to);
+		return ResponseEntity.ok(expenseService.getSpendingSeries(personId, range.getStartDate(), range.getEndDate(), granularity, byCategory));
+	}
+
 	/**
 	 * Retrieves expenses by category and person ID.
 	 *
@@ -118,7 +411,39 @@ public class ExpenseController {
 	@Operation(summary = "Get expenses by category")
 	@GetMapping("/byCategory/{category}/{personId}")
 	public ResponseEntity<?> getExpensesByCategoryAndPersonId(@PathVariable final String category, @PathVariable final Long personId) throws NoExpensesFoundException, NoPersonFoundException {
-		List<Expense> expenses = expenseService.getExpensesByCategoryAndPersonId(category, personId);
+		List<ExpenseView> expenses = expenseService.getExpensesByCategoryAndPersonId(category, personId);
 		return ResponseEntity.ok(expenses);
 	}
+
+	/**
+	 * Retrieves one page of expenses by category and person ID, newest first.
+	 *
+	 * @param category     the category of the expenses to be retrieved.
+	 * @param personId     the ID of the person whose expenses are to be retrieved.
+	 * @param cursor       the continuation token returned with the previous page, omitted for the first page.
+	 * @param size         the page size.
+	 * @param includeTotal whether the total number of expenses in the category should be returned as well.
+	 * @return a ResponseEntity containing the page of expenses and the token of the next page.
+	 * @throws InvalidCursorException if the continuation token is malformed.
+	 */
+	@Operation(summary = "Get a page of expenses by category")
+	@GetMapping("/byCategory/{category}/{personId}/page")
+	public ResponseEntity<?> getPageByCategory(@PathVariable final String category, @PathVariable final Long personId,
+											   @RequestParam(required = false) final String cursor,
+											   @RequestParam(required = false) final Integer size,
+											   @RequestParam(defaultValue = "false") final boolean includeTotal) throws InvalidCursorException {
+		return ResponseEntity.ok(expenseService.getPage(personId, category, cursor, size, includeTotal));
+	}
+
+	/**
+	 * Sets the caching headers and checks the ETag against If-None-Match, setting 304 if it matches.
+	 * The headers are written to the response directly, so they are sent with 304 as well as with 200.
+	 * Without an ETag, e.g. when the expense versions are disabled, the request is always answered in full.
+	 */
+	private static boolean notModified(final ServletWebRequest request, final String etag, final CacheControl cacheControl) {
+		if (request.getResponse() != null) {
+			request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+		}
+		return etag != null && request.checkNotModified(etag);
+	}
 }
@@ -0,0 +1,46 @@
+package app.expenses_application.controller;
+
+import app.expenses_application.service.ExpenseExportService;
+import app.expenses_application.service.ExpenseExportService.ExportFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Controller class for exporting the expense history of a person.
+ * The export is streamed to the client, nothing is collected in memory.
+ */
+
+@RestController
+@Slf4j
+@CrossOrigin(origins = "http://localhost:4200")
+//@CrossOrigin(origins = "http://outcometracker.s3-website.eu-north-1.amazonaws.com")
+@RequestMapping("/api/expense/export")
+@RequiredArgsConstructor
+public class ExpenseExportController {
+
+	private final ExpenseExportService expenseExportService;
+
+	/**
+	 * Streams all expenses of a person as NDJSON or CSV.
+	 *
+	 * @param personId the ID of the person whose expenses are to be exported.
+	 * @param format   the export format, NDJSON or CSV.
+	 * @return a ResponseEntity streaming the expenses.
+	 */
+	@Operation(summary = "Export all expenses for a person")
+	@GetMapping("/{personId}")
+	public ResponseEntity<StreamingResponseBody> export(@PathVariable final Long personId,
+														@RequestParam(defaultValue = "NDJSON") final ExportFormat format) {
+		StreamingResponseBody body = outputStream -> expenseExportService.export(personId, format, outputStream);
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(format.getContentType()))
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"expenses-" + personId + "." + format.getFileExtension() + "\"")
+				.body(body);
+	}
+}
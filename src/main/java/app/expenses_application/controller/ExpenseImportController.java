@@ -0,0 +1,61 @@
+package app.expenses_application.controller;
+
+import app.expenses_application.exception.MandatoryFieldsMissingException;
+import app.expenses_application.exception.NoImportFoundException;
+import app.expenses_application.exception.NoPersonFoundException;
+import app.expenses_application.service.ExpenseImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * Controller class for importing bank statements.
+ * This class provides endpoints for uploading a CSV file and polling the progress of its import.
+ */
+
+@RestController
+@Slf4j
+@CrossOrigin(origins = "http://localhost:4200")
+//@CrossOrigin(origins = "http://outcometracker.s3-website.eu-north-1.amazonaws.com")
+@RequestMapping("/api/expense/import")
+@RequiredArgsConstructor
+public class ExpenseImportController {
+
+	private final ExpenseImportService expenseImportService;
+
+	/**
+	 * Uploads a CSV file and starts importing its expenses in the background.
+	 *
+	 * @param personId the ID of the person the expenses belong to.
+	 * @param file     the CSV file with date, category, price and optional description columns.
+	 * @return a ResponseEntity containing the import status with the ID to poll.
+	 * @throws NoPersonFoundException if the person is not found.
+	 * @throws MandatoryFieldsMissingException if the CSV header misses mandatory columns.
+	 * @throws IOException if the uploaded file cannot be stored.
+	 */
+	@Operation(summary = "Import expenses from a CSV file")
+	@PostMapping("/{personId}")
+	public ResponseEntity<?> importCsv(@PathVariable final Long personId, @RequestParam("file") final MultipartFile file)
+			throws NoPersonFoundException, MandatoryFieldsMissingException, IOException {
+		return ResponseEntity.status(HttpStatus.ACCEPTED).body(expenseImportService.start(personId, file));
+	}
+
+	/**
+	 * Retrieves the progress of an import.
+	 *
+	 * @param importId the ID of the import.
+	 * @return a ResponseEntity containing the number of read, imported and rejected rows.
+	 * @throws NoImportFoundException if no import is known with the given ID.
+	 */
+	@Operation(summary = "Get the progress of an import")
+	@GetMapping("/status/{importId}")
+	public ResponseEntity<?> getStatus(@PathVariable final String importId) throws NoImportFoundException {
+		return ResponseEntity.ok(expenseImportService.getStatus(importId));
+	}
+}
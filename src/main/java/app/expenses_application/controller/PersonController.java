@@ -1,8 +1,11 @@
 package app.expenses_application.controller;
 
+import app.expenses_application.exception.InvalidSortException;
 import app.expenses_application.exception.MandatoryFieldsMissingException;
+import app.expenses_application.exception.NoDeletionFoundException;
 import app.expenses_application.exception.NoPersonFoundException;
 import app.expenses_application.model.Person;
+import app.expenses_application.service.PersonDeletionService;
 import app.expenses_application.service.PersonService;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +27,7 @@ import org.springframework.web.bind.annotation.*;
 public class PersonController {
 
     private final PersonService personService;
+    private final PersonDeletionService personDeletionService;
 
     /**
      * Adds a new person.
@@ -40,19 +44,37 @@ public class PersonController {
     }
 
     /**
-     * Deletes a person by their ID.
+     * Deletes a person by their ID, together with their expenses.
+     * With async the deletion runs in the background in chunks, and its status can be polled.
      *
-     * @param id the ID of the person to be deleted.
-     * @return a ResponseEntity with a success message.
+     * @param id    the ID of the person to be deleted.
+     * @param async whether the person should be deleted in the background.
+     * @return a ResponseEntity with a success message, or with the deletion status to poll when async.
      * @throws NoPersonFoundException if no person is found with the given ID.
      */
     @Operation(summary = "Delete person by id")
     @DeleteMapping("/delete/{id}")
-    public ResponseEntity<?> delete(@PathVariable final long id) throws NoPersonFoundException {
+    public ResponseEntity<?> delete(@PathVariable final long id, @RequestParam(defaultValue = "false") final boolean async) throws NoPersonFoundException {
+        if (async) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(personDeletionService.start(id));
+        }
         personService.deleteById(id);
         return ResponseEntity.status(HttpStatus.OK).body("Person deleted successfully.");
     }
 
+    /**
+     * Retrieves the progress of a background person deletion.
+     *
+     * @param deletionId the ID of the deletion.
+     * @return a ResponseEntity containing the state of the deletion and the number of deleted expenses.
+     * @throws NoDeletionFoundException if no deletion is known with the given ID.
+     */
+    @Operation(summary = "Get the progress of a person deletion")
+    @GetMapping("/delete/status/{deletionId}")
+    public ResponseEntity<?> getDeletionStatus(@PathVariable final String deletionId) throws NoDeletionFoundException {
+        return ResponseEntity.ok(personDeletionService.getStatus(deletionId));
+    }
+
     /**
      * Retrieves all persons.
      *
@@ -64,4 +86,25 @@ public class PersonController {
     public ResponseEntity<?> getAll() throws NoPersonFoundException {
         return ResponseEntity.status(HttpStatus.OK).body(personService.getAll());
     }
+
+    /**
+     * Retrieves one page of persons, without their passwords.
+     *
+     * @param page                the page number, starting at 0.
+     * @param size                the page size.
+     * @param sort                the field to sort by: id, email, name or role, and expenseCount or expenseTotal with statistics.
+     * @param descending          whether the sort order is descending.
+     * @param includeExpenseStats whether the number and total of the expenses of every person should be returned as well.
+     * @return a ResponseEntity containing the page of persons and the total number of persons.
+     * @throws InvalidSortException if the persons cannot be sorted by the given field.
+     */
+    @Operation(summary = "Get a page of persons")
+    @GetMapping("/page")
+    public ResponseEntity<?> getPage(@RequestParam(required = false) final Integer page,
+                                     @RequestParam(required = false) final Integer size,
+                                     @RequestParam(required = false) final String sort,
+                                     @RequestParam(defaultValue = "false") final boolean descending,
+                                     @RequestParam(defaultValue = "false") final boolean includeExpenseStats) throws InvalidSortException {
+        return ResponseEntity.ok(personService.getPage(page, size, sort, descending, includeExpenseStats));
+    }
 }
@@ -0,0 +1,45 @@
+package app.expenses_application.dto;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the statistics of an in-memory cache.
+ * This class encapsulates the cache name, its size and its hit, miss and eviction counters.
+ */
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatistics {
+
+    private String name;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+
+    /**
+     * Creates the statistics of a cache from its counters.
+     *
+     * @param name  the cache name.
+     * @param size  the approximate number of cached entries.
+     * @param stats the cache counters.
+     * @return the cache statistics.
+     */
+    public static CacheStatistics of(String name, long size, CacheStats stats) {
+        return CacheStatistics.builder()
+                .name(name)
+                .size(size)
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .build();
+    }
+}
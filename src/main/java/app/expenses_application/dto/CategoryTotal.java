@@ -0,0 +1,34 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.model.Category;
+import app.expenses_application.util.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for expenses aggregated by category.
+ * This class encapsulates the total, the number and the average price of the expenses of one category.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryTotal {
+
+    private Category category;
+    private Double total;
+    private Long count;
+    private Double average;
+
+    /**
+     * Creates the aggregate from a sum of cents, as selected by the queries. The average is rounded to whole cents.
+     *
+     * @param category   the category.
+     * @param totalCents the sum of the prices in cents.
+     * @param count      the number of expenses.
+     */
+    public CategoryTotal(Category category, Long totalCents, Long count) {
+        this(category, Money.toAmount(totalCents), count, Money.toAmount(Math.round((double) totalCents / count)));
+    }
+}
@@ -0,0 +1,61 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.exception.MandatoryFieldsMissingException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+
+/**
+ * Inclusive range of dates used by the summary endpoints.
+ */
+
+@Data
+@AllArgsConstructor
+public class DateRange {
+
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    /**
+     * Resolves the range from request parameters. Either from and to, or year and month can be given.
+     * Without any of them the current month is used.
+     *
+     * @param year  the year of the month, used together with month.
+     * @param month the month number (1-12), used together with year.
+     * @param from  the first day of the range, inclusive.
+     * @param to    the last day of the range, inclusive.
+     * @return the date range.
+     * @throws MandatoryFieldsMissingException if only one bound of the range or of the month is given, or the month is not valid.
+     */
+    public static DateRange of(final Integer year, final Integer month, final LocalDate from, final LocalDate to) throws MandatoryFieldsMissingException {
+        if (from != null || to != null) {
+            if (from == null || to == null) {
+                throw new MandatoryFieldsMissingException("Both from and to dates must be provided.");
+            }
+            return new DateRange(from, to);
+        }
+        if (year != null || month != null) {
+            if (year == null || month == null) {
+                throw new MandatoryFieldsMissingException("Both year and month must be provided.");
+            }
+            if (month < 1 || month > 12 || year < Year.MIN_VALUE || year > Year.MAX_VALUE) {
+                throw new MandatoryFieldsMissingException("Month must be between 1 and 12 of a valid year.");
+            }
+            return ofMonth(YearMonth.of(year, month));
+        }
+        return ofMonth(YearMonth.now());
+    }
+
+    /**
+     * Creates the range covering a whole month.
+     *
+     * @param yearMonth the month.
+     * @return the date range from the first to the last day of the month.
+     */
+    public static DateRange ofMonth(final YearMonth yearMonth) {
+        return new DateRange(yearMonth.atDay(1), yearMonth.atEndOfMonth());
+    }
+}
@@ -0,0 +1,22 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.model.Expense;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for batch expense requests.
+ * This class encapsulates the list of expenses and the ID of the person they all belong to.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseBatchRequest {
+
+    private List<Expense> expenses;
+    private Long personId;
+}
@@ -0,0 +1,36 @@
+package app.expenses_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for batch expense responses.
+ * This class encapsulates the number and IDs of the added expenses and the errors of the rejected ones.
+ */
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseBatchResponse {
+
+    private int added;
+    private List<Long> ids;
+    private List<ItemError> errors;
+
+    /**
+     * Error of a single rejected expense, identified by its position in the request.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemError {
+
+        private int index;
+        private String message;
+    }
+}
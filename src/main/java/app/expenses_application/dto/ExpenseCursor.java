@@ -0,0 +1,61 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.exception.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Position in an expense listing ordered by date and ID descending.
+ * The cursor is handed to clients as an opaque token and points at the last expense of a page.
+ */
+
+@Data
+@AllArgsConstructor
+public class ExpenseCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private LocalDate date;
+    private Long id;
+
+    /**
+     * Creates the cursor pointing at the given expense.
+     *
+     * @param expense the last expense of a page.
+     * @return the cursor.
+     */
+    public static ExpenseCursor of(final ExpenseView expense) {
+        return new ExpenseCursor(expense.getDate(), expense.getId());
+    }
+
+    /**
+     * Encodes the cursor into an opaque token.
+     *
+     * @return the continuation token.
+     */
+    public String encode() {
+        String raw = date + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the cursor from a continuation token.
+     *
+     * @param token the continuation token.
+     * @return the cursor.
+     * @throws InvalidCursorException if the token was not produced by encode().
+     */
+    public static ExpenseCursor decode(final String token) throws InvalidCursorException {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR);
+            return new ExpenseCursor(LocalDate.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+}
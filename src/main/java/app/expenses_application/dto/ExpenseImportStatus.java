@@ -0,0 +1,31 @@
+package app.expenses_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the progress of an expense import.
+ * This class encapsulates the state of the import and the number of read, imported and rejected rows.
+ */
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseImportStatus {
+
+    private String importId;
+    private State state;
+    private long rowsRead;
+    private long imported;
+    private long rejected;
+    private String message;
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,26 @@
+package app.expenses_application.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for a page of expenses.
+ * This class encapsulates the expenses, the token of the next page and the optional total count.
+ */
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExpensePage {
+
+    private List<ExpenseView> expenses;
+    private String nextCursor;
+    private Long totalCount;
+}
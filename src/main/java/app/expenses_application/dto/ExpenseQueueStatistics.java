@@ -0,0 +1,27 @@
+package app.expenses_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the statistics of the write-behind expense queue.
+ * This class encapsulates the queue depth and capacity and the counters of accepted, rejected and written expenses.
+ */
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseQueueStatistics {
+
+    private boolean enabled;
+    private int depth;
+    private int capacity;
+    private long accepted;
+    private long rejected;
+    private long committed;
+    private long failed;
+    private long groupCommits;
+}
@@ -0,0 +1,32 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.model.Category;
+import app.expenses_application.model.ExpenseSort;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Data Transfer Object for expense search filters.
+ * This class encapsulates the person and the optional filters of a search. A filter left null is not applied.
+ */
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseSearchCriteria {
+
+    private Long personId;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Set<Category> categories;
+    private Double minPrice;
+    private Double maxPrice;
+    private String description;
+    private ExpenseSort sort;
+}
@@ -0,0 +1,67 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.exception.InvalidCursorException;
+import app.expenses_application.model.ExpenseSort;
+import app.expenses_application.util.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Position in an expense search ordered by date or by price, then by ID.
+ * The cursor is handed to clients as an opaque token and points at the last expense of a page. It records the sort
+ * order it was created for, as its position means nothing in another order.
+ */
+
+@Data
+@AllArgsConstructor
+public class ExpenseSearchCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private ExpenseSort sort;
+    private LocalDate date;
+    private long priceCents;
+    private Long id;
+
+    /**
+     * Creates the cursor pointing at the given expense.
+     *
+     * @param expense the last expense of a page.
+     * @param sort    the sort order of the search.
+     * @return the cursor.
+     */
+    public static ExpenseSearchCursor of(final ExpenseView expense, final ExpenseSort sort) {
+        return new ExpenseSearchCursor(sort, expense.getDate(), Money.toCents(expense.getPrice()), expense.getId());
+    }
+
+    /**
+     * Encodes the cursor into an opaque token.
+     *
+     * @return the continuation token.
+     */
+    public String encode() {
+        String raw = sort + SEPARATOR + date + SEPARATOR + priceCents + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the cursor from a continuation token.
+     *
+     * @param token the continuation token.
+     * @return the cursor.
+     * @throws InvalidCursorException if the token was not produced by encode().
+     */
+    public static ExpenseSearchCursor decode(final String token) throws InvalidCursorException {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR);
+            return new ExpenseSearchCursor(ExpenseSort.valueOf(parts[0]), LocalDate.parse(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+}
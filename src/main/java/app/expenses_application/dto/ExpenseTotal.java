@@ -0,0 +1,30 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.util.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for aggregated expenses.
+ * This class encapsulates the sum of prices and the number of expenses computed by the DB.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseTotal {
+
+    private Double total;
+    private Long count;
+
+    /**
+     * Creates the total from a sum of cents, as selected by the queries.
+     *
+     * @param totalCents the sum of the prices in cents.
+     * @param count      the number of expenses.
+     */
+    public ExpenseTotal(Long totalCents, Long count) {
+        this(Money.toAmount(totalCents), count);
+    }
+}
@@ -0,0 +1,52 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.model.Category;
+import app.expenses_application.util.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only Data Transfer Object for listed expenses.
+ * This class encapsulates the expense columns selected by the listing queries. It is not a managed entity,
+ * so neither the person nor a dirty-checking snapshot is loaded with it. It serializes like Expense.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseView {
+
+    private Long id;
+    private Category category;
+    private double price;
+    private LocalDate date;
+    private String description;
+
+    /**
+     * Creates the view from a price in cents, as selected by the listing queries.
+     *
+     * @param id          the ID of the expense.
+     * @param category    the category of the expense.
+     * @param priceCents  the price in cents.
+     * @param date        the date of the expense.
+     * @param description the description of the expense.
+     */
+    public ExpenseView(Long id, Category category, Long priceCents, LocalDate date, String description) {
+        this(id, category, Money.toAmount(priceCents), date, description);
+    }
+
+    /**
+     * Creates the view without the description, as selected for the in-memory column store.
+     *
+     * @param id         the ID of the expense.
+     * @param category   the category of the expense.
+     * @param priceCents the price in cents.
+     * @param date       the date of the expense.
+     */
+    public ExpenseView(Long id, Category category, Long priceCents, LocalDate date) {
+        this(id, category, priceCents, date, null);
+    }
+}
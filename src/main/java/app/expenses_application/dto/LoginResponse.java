@@ -1,11 +1,13 @@
 package app.expenses_application.dto;
 
-import app.expenses_application.model.Person;
+import app.expenses_application.model.Role;
 import lombok.*;
 
+import java.util.Date;
+
 /**
  * Data Transfer Object for login responses.
- * This class encapsulates the authentication token and the associated person details.
+ * This class encapsulates the authentication token, its expiry and the id, name and role of the authenticated person.
  */
 
 @Data
@@ -15,5 +17,8 @@ import lombok.*;
 public class LoginResponse {
 
     private String token;
-    private Person person;
-}
\ No newline at end of file
+    private Date tokenExpiresAt;
+    private Long id;
+    private String name;
+    private Role role;
+}
@@ -0,0 +1,30 @@
+package app.expenses_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the progress of a background person deletion.
+ * This class encapsulates the state of the deletion and the number of expenses deleted so far.
+ */
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PersonDeletionStatus {
+
+    private String deletionId;
+    private Long personId;
+    private State state;
+    private long expensesDeleted;
+    private String message;
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,57 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.model.Role;
+import app.expenses_application.util.Money;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Read-only Data Transfer Object for one row of the person listing.
+ * This class encapsulates the person columns selected by the listing queries, without the password or the expense list.
+ * The expense count and total are only set when the listing was requested with statistics.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PersonListItem {
+
+    private Long id;
+    private String email;
+    private String name;
+    private Role role;
+    private Boolean enabled;
+    private Long expenseCount;
+    private Double expenseTotal;
+
+    /**
+     * Creates a listing row without expense statistics.
+     *
+     * @param id      the ID of the person.
+     * @param email   the email address of the person.
+     * @param name    the name of the person.
+     * @param role    the role of the person.
+     * @param enabled whether the person is enabled.
+     */
+    public PersonListItem(Long id, String email, String name, Role role, Boolean enabled) {
+        this(id, email, name, role, enabled, null, (Double) null);
+    }
+
+    /**
+     * Creates a listing row with expense statistics from a sum of cents, as selected by the listing query.
+     *
+     * @param id                the ID of the person.
+     * @param email             the email address of the person.
+     * @param name              the name of the person.
+     * @param role              the role of the person.
+     * @param enabled           whether the person is enabled.
+     * @param expenseCount      the number of expenses of the person.
+     * @param expenseTotalCents the sum of the prices of the person's expenses in cents.
+     */
+    public PersonListItem(Long id, String email, String name, Role role, Boolean enabled, Long expenseCount, Long expenseTotalCents) {
+        this(id, email, name, role, enabled, expenseCount, Money.toAmount(expenseTotalCents));
+    }
+}
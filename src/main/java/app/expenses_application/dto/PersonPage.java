@@ -0,0 +1,26 @@
+package app.expenses_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for a page of persons.
+ * This class encapsulates the persons, the page number and size and the total number of persons.
+ */
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PersonPage {
+
+    private List<PersonListItem> persons;
+    private int page;
+    private int size;
+    private long totalCount;
+    private int totalPages;
+}
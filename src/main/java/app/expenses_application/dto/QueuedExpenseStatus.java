@@ -0,0 +1,31 @@
+package app.expenses_application.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the state of an expense added through the write-behind queue.
+ * This class encapsulates the ID to poll, the state of the write and, once committed, the ID of the expense.
+ */
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueuedExpenseStatus {
+
+    private String writeId;
+    private State state;
+    private Long expenseId;
+    private String message;
+
+    public enum State {
+        QUEUED,
+        COMMITTED,
+        FAILED
+    }
+}
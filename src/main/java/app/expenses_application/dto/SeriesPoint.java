@@ -0,0 +1,27 @@
+package app.expenses_application.dto;
+
+import app.expenses_application.model.Category;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Data Transfer Object for one bucket of a spending series.
+ * This class encapsulates the first day of the bucket, its total and count, and optionally the totals per category.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SeriesPoint {
+
+    private LocalDate bucketStart;
+    private double total;
+    private long count;
+    private Map<Category, Double> byCategory;
+}
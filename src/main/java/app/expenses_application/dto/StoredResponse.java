@@ -0,0 +1,22 @@
+package app.expenses_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for a response kept for an Idempotency-Key.
+ * This class encapsulates the status, the content type and the body replayed to a retried request, and the hash of the
+ * request body the key was used with.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredResponse {
+
+    private int status;
+    private String contentType;
+    private byte[] body;
+    private String requestHash;
+}
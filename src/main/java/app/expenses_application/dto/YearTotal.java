@@ -0,0 +1,20 @@
+package app.expenses_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for expenses aggregated by year.
+ * This class encapsulates the year, the sum of prices and the number of expenses.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class YearTotal {
+
+    private int year;
+    private double total;
+    private long count;
+}
@@ -1,5 +1,6 @@
 package app.expenses_application.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -30,4 +31,34 @@ public class ControllerAdvice {
 	public ResponseEntity<String> handleNoCategoriesFoundException(NoCategoriesFoundException ex) {
 		return ResponseEntity.status(HttpStatus.OK).body(ex.getMessage());
 	}
+
+	@ExceptionHandler(InvalidCursorException.class)
+	public ResponseEntity<String> handleInvalidCursorException(InvalidCursorException ex) {
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+	}
+
+	@ExceptionHandler(InvalidSortException.class)
+	public ResponseEntity<String> handleInvalidSortException(InvalidSortException ex) {
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+	}
+
+	@ExceptionHandler(NoImportFoundException.class)
+	public ResponseEntity<String> handleNoImportFoundException(NoImportFoundException ex) {
+		return ResponseEntity.status(HttpStatus.OK).body(ex.getMessage());
+	}
+
+	@ExceptionHandler(NoDeletionFoundException.class)
+	public ResponseEntity<String> handleNoDeletionFoundException(NoDeletionFoundException ex) {
+		return ResponseEntity.status(HttpStatus.OK).body(ex.getMessage());
+	}
+
+	@ExceptionHandler(NoQueuedExpenseFoundException.class)
+	public ResponseEntity<String> handleNoQueuedExpenseFoundException(NoQueuedExpenseFoundException ex) {
+		return ResponseEntity.status(HttpStatus.OK).body(ex.getMessage());
+	}
+
+	@ExceptionHandler(ExpenseQueueFullException.class)
+	public ResponseEntity<String> handleExpenseQueueFullException(ExpenseQueueFullException ex) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(ex.getMessage());
+	}
 }
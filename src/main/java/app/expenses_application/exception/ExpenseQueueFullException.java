@@ -0,0 +1,8 @@
+package app.expenses_application.exception;
+
+public class ExpenseQueueFullException extends Exception {
+
+    public ExpenseQueueFullException(final String message) {
+        super(message);
+    }
+}
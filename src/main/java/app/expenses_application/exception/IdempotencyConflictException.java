@@ -0,0 +1,8 @@
+package app.expenses_application.exception;
+
+public class IdempotencyConflictException extends Exception {
+
+    public IdempotencyConflictException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package app.expenses_application.exception;
+
+public class IdempotencyKeyReusedException extends Exception {
+
+    public IdempotencyKeyReusedException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package app.expenses_application.exception;
+
+public class InvalidCursorException extends Exception {
+
+    public InvalidCursorException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package app.expenses_application.exception;
+
+public class InvalidSortException extends Exception {
+
+    public InvalidSortException(final String message) {
+        super(message);
+    }
+}
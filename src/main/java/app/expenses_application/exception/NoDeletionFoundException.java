@@ -0,0 +1,8 @@
+package app.expenses_application.exception;
+
+public class NoDeletionFoundException extends Exception {
+
+    public NoDeletionFoundException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package app.expenses_application.exception;
+
+public class NoImportFoundException extends Exception {
+
+    public NoImportFoundException(final String message) {
+        super(message);
+    }
+}
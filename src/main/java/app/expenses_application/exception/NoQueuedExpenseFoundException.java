@@ -0,0 +1,8 @@
+package app.expenses_application.exception;
+
+public class NoQueuedExpenseFoundException extends Exception {
+
+    public NoQueuedExpenseFoundException(final String message) {
+        super(message);
+    }
+}
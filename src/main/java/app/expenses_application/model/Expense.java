@@ -1,40 +1,76 @@
 package app.expenses_application.model;
 
+import app.expenses_application.util.Money;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.springframework.stereotype.Component;
 
 import javax.persistence.*;
 import java.time.LocalDate;
 
 /**
- * Here you can see the data which Expense object includes. Unique object id generates automatically.
- * Expense is mapped with Person by person_id
+ * Here you can see the data which Expense object includes. Unique object id generates automatically
+ * from the pooled expense_seq sequence (a table on MySQL), so inserts can be batched.
+ * Expense is mapped with Person by person_id. The person is loaded lazily and left out of equals, hashCode and toString,
+ * so handling an expense never loads its person.
+ * The price is stored in whole cents and exposed as an amount, e.g. 12.5 is stored as 1250. An amount that cannot be
+ * converted to cents is stored as 0, which validation rejects.
  */
 
 @Data
 @Component
 @Entity
 @NoArgsConstructor
-@AllArgsConstructor
 public class Expense {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "expense_id_generator")
+	@SequenceGenerator(name = "expense_id_generator", sequenceName = "expense_seq", allocationSize = 50)
 	private Long id;
 	@Enumerated(EnumType.STRING)
 	@Column(nullable = false)
 	private Category category;
-	@Column(nullable = false)
-	private double price;
+	@JsonIgnore
+	@Column(name = "price_cents", nullable = false)
+	private long priceCents;
 	@Column(nullable = false, updatable = false)
 	private LocalDate date;
 	private String description;
 
 	@JsonIgnore
-	@ManyToOne
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "person_id")
 	private Person person;
+
+	public Expense(Long id, Category category, double price, LocalDate date, String description, Person person) {
+		this.id = id;
+		this.category = category;
+		this.priceCents = Money.toCentsOrZero(price);
+		this.date = date;
+		this.description = description;
+		this.person = person;
+	}
+
+	/**
+	 * Returns the price as an amount.
+	 *
+	 * @return the price.
+	 */
+	public double getPrice() {
+		return Money.toAmount(priceCents);
+	}
+
+	/**
+	 * Sets the price from an amount, rounded to whole cents, or to 0 if the amount cannot be converted.
+	 *
+	 * @param price the price.
+	 */
+	public void setPrice(double price) {
+		this.priceCents = Money.toCentsOrZero(price);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package app.expenses_application.model;
+
+/**
+ * Enumeration representing the sort orders of the expense search.
+ * Every order is broken by the expense ID, so the keyset pagination is stable.
+ */
+
+public enum ExpenseSort {
+
+    DATE_DESC,
+    DATE_ASC,
+    PRICE_DESC,
+    PRICE_ASC;
+
+    /**
+     * Checks if the expenses are ordered by date.
+     *
+     * @return true if the expenses are ordered by date, false if by price.
+     */
+    public boolean byDate() {
+        return this == DATE_DESC || this == DATE_ASC;
+    }
+
+    /**
+     * Checks if the order is descending.
+     *
+     * @return true if the order is descending, false otherwise.
+     */
+    public boolean descending() {
+        return this == DATE_DESC || this == PRICE_DESC;
+    }
+}
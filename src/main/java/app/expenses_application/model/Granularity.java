@@ -0,0 +1,64 @@
+package app.expenses_application.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Enumeration representing the bucket sizes of spending series.
+ * Weeks are ISO weeks starting on Monday.
+ */
+
+public enum Granularity {
+
+    DAY,
+    WEEK,
+    MONTH;
+
+    /**
+     * Returns the first day of the bucket the date belongs to.
+     *
+     * @param date the date.
+     * @return the start of the bucket.
+     */
+    public LocalDate bucketStart(LocalDate date) {
+        switch (this) {
+            case WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+
+    /**
+     * Returns the first day of the bucket following the one starting at the given date.
+     *
+     * @param bucketStart the start of a bucket.
+     * @return the start of the next bucket.
+     */
+    public LocalDate nextBucket(LocalDate bucketStart) {
+        switch (this) {
+            case WEEK:
+                return bucketStart.plusWeeks(1);
+            case MONTH:
+                return bucketStart.plusMonths(1);
+            default:
+                return bucketStart.plusDays(1);
+        }
+    }
+
+    /**
+     * Returns the number of buckets overlapping the range.
+     *
+     * @param startDate the first day of the range, inclusive.
+     * @param endDate   the last day of the range, inclusive.
+     * @return the number of buckets.
+     */
+    public long bucketCount(LocalDate startDate, LocalDate endDate) {
+        ChronoUnit unit = this == WEEK ? ChronoUnit.WEEKS : this == MONTH ? ChronoUnit.MONTHS : ChronoUnit.DAYS;
+        return unit.between(bucketStart(startDate), bucketStart(endDate)) + 1;
+    }
+}
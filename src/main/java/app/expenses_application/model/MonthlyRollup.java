@@ -0,0 +1,57 @@
+package app.expenses_application.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Total and number of expenses of one person in one category and month.
+ * The month is stored as yyyyMM, e.g. 202401, and the total in whole cents. Rows are kept up to date whenever expenses are added or deleted.
+ */
+
+@Data
+@Entity
+@Table(name = "monthly_rollup")
+@IdClass(MonthlyRollupId.class)
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyRollup {
+
+	@Id
+	@Column(name = "person_id")
+	private Long personId;
+	@Id
+	@Column(name = "rollup_month")
+	private Integer rollupMonth;
+	@Id
+	@Enumerated(EnumType.STRING)
+	private Category category;
+	@Column(name = "total_cents", nullable = false)
+	private long totalCents;
+	@Column(name = "expense_count", nullable = false)
+	private long expenseCount;
+
+	/**
+	 * Converts a date to the yyyyMM month key.
+	 *
+	 * @param date the date.
+	 * @return the month key.
+	 */
+	public static int monthOf(LocalDate date) {
+		return date.getYear() * 100 + date.getMonthValue();
+	}
+
+	/**
+	 * Converts a month to the yyyyMM month key.
+	 *
+	 * @param yearMonth the month.
+	 * @return the month key.
+	 */
+	public static int monthOf(YearMonth yearMonth) {
+		return yearMonth.getYear() * 100 + yearMonth.getMonthValue();
+	}
+}
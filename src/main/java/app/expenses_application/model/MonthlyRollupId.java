@@ -0,0 +1,21 @@
+package app.expenses_application.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Composite key of MonthlyRollup: person, month and category.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyRollupId implements Serializable {
+
+	private Long personId;
+	private Integer rollupMonth;
+	private Category category;
+}
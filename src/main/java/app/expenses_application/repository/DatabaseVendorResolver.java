@@ -0,0 +1,54 @@
+package app.expenses_application.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Resolves the database vendor the native SQL of the repositories is written for.
+ * The vendor is taken from the Hibernate dialect once, so every repository picks the SQL of the same database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DatabaseVendorResolver {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private volatile Vendor vendor;
+
+    /**
+     * Databases with vendor-specific native SQL. H2 also stands for any other database.
+     */
+    public enum Vendor {
+        MYSQL,
+        POSTGRESQL,
+        H2
+    }
+
+    /**
+     * Returns the vendor of the database, resolved on the first call.
+     *
+     * @return the database vendor.
+     */
+    public Vendor vendor() {
+        if (vendor == null) {
+            Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+            if (dialect instanceof PostgreSQL81Dialect) {
+                vendor = Vendor.POSTGRESQL;
+            } else if (dialect instanceof MySQLDialect) {
+                vendor = Vendor.MYSQL;
+            } else {
+                vendor = Vendor.H2;
+            }
+            log.info("Using the native SQL of {} for {}.", vendor, dialect.getClass().getSimpleName());
+        }
+        return vendor;
+    }
+}
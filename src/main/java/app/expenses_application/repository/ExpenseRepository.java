@@ -1,29 +1,54 @@
 package app.expenses_application.repository;
 
+import app.expenses_application.dto.CategoryTotal;
+import app.expenses_application.dto.ExpenseTotal;
+import app.expenses_application.dto.ExpenseView;
 import app.expenses_application.model.Category;
 import app.expenses_application.model.Expense;
+import app.expenses_application.model.MonthlyRollup;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for managing expenses in the database.
+ * Listing queries select ExpenseView projections instead of entities, the Expense entity is used for writes.
  */
 @Repository
 public interface ExpenseRepository extends JpaRepository<Expense, Long> {
 
     /**
-     * Retrieves all expenses for a specific person within a given date range.
+     * Sums and counts the expenses of a specific person within a given date range in the DB.
      *
      * @param personId  the ID of the person.
      * @param startDate the start date of the date range.
      * @param endDate   the end date of the date range.
-     * @return a list of expenses within the specified date range for the person.
+     * @return the total price and the number of expenses, total is 0 if there are none.
      */
+    @Query("SELECT new app.expenses_application.dto.ExpenseTotal(COALESCE(SUM(e.priceCents), 0L), COUNT(e)) " +
+            "FROM Expense e WHERE e.person.id = :personId AND e.date BETWEEN :startDate AND :endDate")
+    ExpenseTotal sumByPersonIdAndDateBetween(@Param("personId") Long personId, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
-    List<Expense> findAllByPersonIdAndDateBetween(Long personId, LocalDate startDate, LocalDate endDate);
+    /**
+     * Sums, counts and averages the expenses of a specific person per category within a given date range in the DB.
+     *
+     * @param personId  the ID of the person.
+     * @param startDate the start date of the date range.
+     * @param endDate   the end date of the date range.
+     * @return one aggregate per category that has expenses within the range.
+     */
+    @Query("SELECT new app.expenses_application.dto.CategoryTotal(e.category, SUM(e.priceCents), COUNT(e)) " +
+            "FROM Expense e WHERE e.person.id = :personId AND e.date BETWEEN :startDate AND :endDate " +
+            "GROUP BY e.category ORDER BY SUM(e.priceCents) DESC")
+    List<CategoryTotal> sumByCategory(@Param("personId") Long personId, @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
     /**
      * Retrieves all expenses belonging to a specific category.
@@ -41,7 +66,9 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
      * @param personId the ID of the person.
      * @return a list of expenses belonging to the specified category for the person.
      */
-    List<Expense> findByCategoryAndPersonId(Category category, Long personId);
+    @Query("SELECT new app.expenses_application.dto.ExpenseView(e.id, e.category, e.priceCents, e.date, e.description) " +
+            "FROM Expense e WHERE e.category = :category AND e.person.id = :personId")
+    List<ExpenseView> findByCategoryAndPersonId(@Param("category") Category category, @Param("personId") Long personId);
 
     /**
      * Finds all expenses by the given person ID.
@@ -49,5 +76,163 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
      * @param personId the ID of the person whose expenses are to be retrieved.
      * @return a list of expenses for the specified person.
      */
-    List<Expense> findByPersonId(Long personId);
+    @Query("SELECT new app.expenses_application.dto.ExpenseView(e.id, e.category, e.priceCents, e.date, e.description) " +
+            "FROM Expense e WHERE e.person.id = :personId")
+    List<ExpenseView> findByPersonId(@Param("personId") Long personId);
+
+    /**
+     * Finds the columns the in-memory column store keeps of every expense of a person, without the descriptions.
+     *
+     * @param personId the ID of the person.
+     * @return the expenses of the person ordered by date and ID.
+     */
+    @Query("SELECT new app.expenses_application.dto.ExpenseView(e.id, e.category, e.priceCents, e.date) " +
+            "FROM Expense e WHERE e.person.id = :personId ORDER BY e.date, e.id")
+    List<ExpenseView> findColumnsByPersonId(@Param("personId") Long personId);
+
+    /**
+     * Retrieves the most expensive expenses of a person within a given date range, newest first on equal prices.
+     *
+     * @param personId  the ID of the person.
+     * @param startDate the start date of the date range.
+     * @param endDate   the end date of the date range.
+     * @param pageable  the number of expenses, the page number must be 0.
+     * @return the most expensive expenses within the range.
+     */
+    @Query("SELECT new app.expenses_application.dto.ExpenseView(e.id, e.category, e.priceCents, e.date, e.description) " +
+            "FROM Expense e WHERE e.person.id = :personId AND e.date BETWEEN :startDate AND :endDate " +
+            "ORDER BY e.priceCents DESC, e.date DESC, e.id DESC")
+    List<ExpenseView> findTopByPersonIdAndDateBetween(@Param("personId") Long personId, @Param("startDate") LocalDate startDate,
+                                                      @Param("endDate") LocalDate endDate, Pageable pageable);
+
+    /**
+     * Retrieves the first page of expenses of a person, newest first. No count query is run.
+     *
+     * @param personId the ID of the person.
+     * @param pageable the page size, the page number must be 0.
+     * @return the newest expenses of the person ordered by date and ID descending.
+     */
+    @Query("SELECT new app.expenses_application.dto.ExpenseView(e.id, e.category, e.priceCents, e.date, e.description) " +
+            "FROM Expense e WHERE e.person.id = :personId ORDER BY e.date DESC, e.id DESC")
+    List<ExpenseView> findFirstPageByPersonId(@Param("personId") Long personId, Pageable pageable);
+
+    /**
+     * Retrieves the page of expenses of a person that follows the given position (keyset pagination).
+     *
+     * @param personId the ID of the person.
+     * @param date     the date of the last expense of the previous page.
+     * @param id       the ID of the last expense of the previous page.
+     * @param pageable the page size, the page number must be 0.
+     * @return the expenses after the position ordered by date and ID descending.
+     */
+    @Query("SELECT new app.expenses_application.dto.ExpenseView(e.id, e.category, e.priceCents, e.date, e.description) " +
+            "FROM Expense e WHERE e.person.id = :personId " +
+            "AND e.date <= :date AND (e.date < :date OR e.id < :id) ORDER BY e.date DESC, e.id DESC")
+    List<ExpenseView> findPageByPersonIdAfter(@Param("personId") Long personId, @Param("date") LocalDate date, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Retrieves the first page of expenses of a person in a category, newest first. No count query is run.
+     *
+     * @param category the category of expenses.
+     * @param personId the ID of the person.
+     * @param pageable the page size, the page number must be 0.
+     * @return the newest expenses of the category ordered by date and ID descending.
+     */
+    @Query("SELECT new app.expenses_application.dto.ExpenseView(e.id, e.category, e.priceCents, e.date, e.description) " +
+            "FROM Expense e WHERE e.person.id = :personId AND e.category = :category ORDER BY e.date DESC, e.id DESC")
+    List<ExpenseView> findFirstPageByCategoryAndPersonId(@Param("category") Category category, @Param("personId") Long personId, Pageable pageable);
+
+    /**
+     * Retrieves the page of expenses of a person in a category that follows the given position (keyset pagination).
+     *
+     * @param category the category of expenses.
+     * @param personId the ID of the person.
+     * @param date     the date of the last expense of the previous page.
+     * @param id       the ID of the last expense of the previous page.
+     * @param pageable the page size, the page number must be 0.
+     * @return the expenses after the position ordered by date and ID descending.
+     */
+    @Query("SELECT new app.expenses_application.dto.ExpenseView(e.id, e.category, e.priceCents, e.date, e.description) " +
+            "FROM Expense e WHERE e.person.id = :personId AND e.category = :category " +
+            "AND e.date <= :date AND (e.date < :date OR e.id < :id) ORDER BY e.date DESC, e.id DESC")
+    List<ExpenseView> findPageByCategoryAndPersonIdAfter(@Param("category") Category category, @Param("personId") Long personId,
+                                                     @Param("date") LocalDate date, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Counts all expenses of a person.
+     *
+     * @param personId the ID of the person.
+     * @return the number of expenses.
+     */
+    long countByPersonId(Long personId);
+
+    /**
+     * Counts the expenses of a person in a category.
+     *
+     * @param category the category of expenses.
+     * @param personId the ID of the person.
+     * @return the number of expenses.
+     */
+    long countByCategoryAndPersonId(Category category, Long personId);
+
+    /**
+     * Reads the share of an expense in its monthly rollup: person, yyyyMM month, category, price and a count of 1.
+     * Only these columns are selected, neither the expense nor its person is loaded.
+     *
+     * @param id the ID of the expense.
+     * @return the rollup share of the expense, or empty if no expense has the ID.
+     */
+    @Query("SELECT new app.expenses_application.model.MonthlyRollup(e.person.id, YEAR(e.date) * 100 + MONTH(e.date), e.category, e.priceCents, 1L) " +
+            "FROM Expense e WHERE e.id = :id")
+    Optional<MonthlyRollup> findRollupShareById(@Param("id") Long id);
+
+    /**
+     * Deletes an expense with a single statement, without loading it first.
+     *
+     * @param id the ID of the expense.
+     * @return the number of deleted rows, 0 if no expense has the ID.
+     */
+    @Modifying
+    @Query("DELETE FROM Expense e WHERE e.id = :id")
+    int deleteExpenseById(@Param("id") Long id);
+
+    /**
+     * Deletes all expenses of a person with a single set-based statement, without loading them.
+     *
+     * @param personId the ID of the person.
+     * @return the number of deleted expenses.
+     */
+    @Modifying
+    @Query("DELETE FROM Expense e WHERE e.person.id = :personId")
+    int deleteByPersonId(@Param("personId") Long personId);
+
+    /**
+     * Retrieves the IDs of a bounded chunk of the expenses of a person.
+     *
+     * @param personId the ID of the person.
+     * @param pageable the chunk size, the page number must be 0.
+     * @return up to the chunk size expense IDs.
+     */
+    @Query("SELECT e.id FROM Expense e WHERE e.person.id = :personId")
+    List<Long> findIdsByPersonId(@Param("personId") Long personId, Pageable pageable);
+
+    /**
+     * Sums the shares of the given expenses in their monthly rollups, one row per person, month and category.
+     *
+     * @param ids the IDs of the expenses.
+     * @return the summed rollup shares of the expenses.
+     */
+    @Query("SELECT new app.expenses_application.model.MonthlyRollup(e.person.id, YEAR(e.date) * 100 + MONTH(e.date), e.category, SUM(e.priceCents), COUNT(e)) " +
+            "FROM Expense e WHERE e.id IN :ids GROUP BY e.person.id, YEAR(e.date), MONTH(e.date), e.category")
+    List<MonthlyRollup> sumRollupSharesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes the expenses with the given IDs with a single statement, without loading them.
+     *
+     * @param ids the IDs of the expenses.
+     * @return the number of deleted expenses.
+     */
+    @Modifying
+    @Query("DELETE FROM Expense e WHERE e.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
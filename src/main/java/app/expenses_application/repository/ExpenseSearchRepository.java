@@ -0,0 +1,55 @@
+package app.expenses_application.repository;
+
+import app.expenses_application.dto.ExpenseView;
+import app.expenses_application.model.Expense;
+import app.expenses_application.model.ExpenseSort;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+/**
+ * Repository class running the dynamic expense search as a single Criteria query.
+ * The filters are given as a Specification and the rows are selected as ExpenseView projections, like the listings.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ExpenseSearchRepository {
+
+    private final EntityManager entityManager;
+
+    /**
+     * Retrieves the expenses matching the filter in the given order.
+     *
+     * @param specification the combined filters.
+     * @param sort          the sort order.
+     * @param limit         the maximum number of expenses.
+     * @return the matching expenses.
+     */
+    public List<ExpenseView> search(final Specification<Expense> specification, final ExpenseSort sort, final int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ExpenseView> query = builder.createQuery(ExpenseView.class);
+        Root<Expense> root = query.from(Expense.class);
+        query.select(builder.construct(ExpenseView.class,
+                root.get("id"), root.get("category"), root.get("priceCents"), root.get("date"), root.get("description")));
+        query.where(specification.toPredicate(root, query, builder));
+
+        Path<?> sortColumn = root.get(sort.byDate() ? "date" : "priceCents");
+        Path<?> id = root.get("id");
+        List<Order> order = sort.descending()
+                ? List.of(builder.desc(sortColumn), builder.desc(id))
+                : List.of(builder.asc(sortColumn), builder.asc(id));
+        query.orderBy(order);
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,90 @@
+package app.expenses_application.repository;
+
+import app.expenses_application.model.Category;
+import app.expenses_application.model.Granularity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository class computing time-bucketed expense totals in the database.
+ * The bucket expression depends on the database, MySQL, PostgreSQL and H2 are supported.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ExpenseSeriesRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseVendorResolver databaseVendorResolver;
+
+    /**
+     * Total in cents and number of expenses of one bucket, optionally of one category only.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class BucketTotal {
+
+        private LocalDate bucketStart;
+        private Category category;
+        private long totalCents;
+        private long count;
+    }
+
+    /**
+     * Sums and counts the expenses of a person per bucket within a given date range.
+     *
+     * @param personId    the ID of the person.
+     * @param startDate   the start date of the date range.
+     * @param endDate     the end date of the date range.
+     * @param granularity the bucket size.
+     * @param byCategory  whether every bucket should be split by category.
+     * @return the totals of the buckets that have expenses, ordered by bucket.
+     */
+    public List<BucketTotal> sumByBucket(final Long personId, final LocalDate startDate, final LocalDate endDate,
+                                         final Granularity granularity, final boolean byCategory) {
+        String bucket = bucketExpression(granularity);
+        String groupBy = byCategory ? bucket + ", category" : bucket;
+        String sql = "SELECT " + bucket + " AS bucket_start, " + (byCategory ? "category" : "NULL") + " AS category, "
+                + "SUM(price_cents) AS total_cents, COUNT(*) AS expense_count FROM expense "
+                + "WHERE person_id = ? AND date BETWEEN ? AND ? GROUP BY " + groupBy + " ORDER BY bucket_start";
+        return jdbcTemplate.query(sql, (resultSet, rowNum) -> {
+                    String category = resultSet.getString("category");
+                    return new BucketTotal(
+                            resultSet.getDate("bucket_start").toLocalDate(),
+                            category == null ? null : Category.valueOf(category),
+                            resultSet.getLong("total_cents"),
+                            resultSet.getLong("expense_count"));
+                },
+                personId, Date.valueOf(startDate), Date.valueOf(endDate));
+    }
+
+    private String bucketExpression(final Granularity granularity) {
+        DatabaseVendorResolver.Vendor vendor = databaseVendorResolver.vendor();
+        switch (granularity) {
+            case WEEK:
+                if (vendor == DatabaseVendorResolver.Vendor.POSTGRESQL) {
+                    return "CAST(date_trunc('week', date) AS date)";
+                }
+                if (vendor == DatabaseVendorResolver.Vendor.MYSQL) {
+                    return "DATE_SUB(date, INTERVAL WEEKDAY(date) DAY)";
+                }
+                return "DATEADD('DAY', 1 - ISO_DAY_OF_WEEK(date), date)";
+            case MONTH:
+                if (vendor == DatabaseVendorResolver.Vendor.POSTGRESQL) {
+                    return "CAST(date_trunc('month', date) AS date)";
+                }
+                if (vendor == DatabaseVendorResolver.Vendor.MYSQL) {
+                    return "DATE_SUB(date, INTERVAL DAYOFMONTH(date) - 1 DAY)";
+                }
+                return "DATEADD('DAY', 1 - DAY_OF_MONTH(date), date)";
+            default:
+                return "date";
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package app.expenses_application.repository;
+
+import app.expenses_application.dto.ExpenseSearchCursor;
+import app.expenses_application.model.Category;
+import app.expenses_application.model.Expense;
+import app.expenses_application.model.ExpenseSort;
+import app.expenses_application.util.Money;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Composable filters of the expense search. A filter with a null argument returns null, which Specification.where
+ * and Specification.and skip.
+ * Person and date are plain comparisons on the columns, so the (person_id, date) index bounds the scanned range,
+ * the other filters are checked on the rows of that range. Price orders and price cursors are served by the
+ * (person_id, price_cents, id) index.
+ */
+public final class ExpenseSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private ExpenseSpecifications() {
+    }
+
+    /**
+     * Restricts the expenses to one person.
+     *
+     * @param personId the ID of the person.
+     * @return the filter.
+     */
+    public static Specification<Expense> ofPerson(final Long personId) {
+        return (root, query, builder) -> builder.equal(root.get("person").get("id"), personId);
+    }
+
+    /**
+     * Restricts the expenses to a date range. Either bound may be open.
+     *
+     * @param startDate the first date, inclusive, or null.
+     * @param endDate   the last date, inclusive, or null.
+     * @return the filter, or null if both bounds are open.
+     */
+    public static Specification<Expense> dateBetween(final LocalDate startDate, final LocalDate endDate) {
+        if (startDate == null && endDate == null) {
+            return null;
+        }
+        return (root, query, builder) -> {
+            Path<LocalDate> date = root.get("date");
+            if (startDate == null) {
+                return builder.lessThanOrEqualTo(date, endDate);
+            }
+            if (endDate == null) {
+                return builder.greaterThanOrEqualTo(date, startDate);
+            }
+            return builder.between(date, startDate, endDate);
+        };
+    }
+
+    /**
+     * Restricts the expenses to a set of categories.
+     *
+     * @param categories the categories.
+     * @return the filter, or null if no category is given.
+     */
+    public static Specification<Expense> categoryIn(final Collection<Category> categories) {
+        if (categories == null || categories.isEmpty()) {
+            return null;
+        }
+        return (root, query, builder) -> root.get("category").in(categories);
+    }
+
+    /**
+     * Restricts the expenses to a price range. Either bound may be open.
+     *
+     * @param minPrice the lowest price, inclusive, or null.
+     * @param maxPrice the highest price, inclusive, or null.
+     * @return the filter, or null if both bounds are open.
+     */
+    public static Specification<Expense> priceBetween(final Double minPrice, final Double maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        return (root, query, builder) -> {
+            Path<Long> priceCents = root.get("priceCents");
+            if (minPrice == null) {
+                return builder.lessThanOrEqualTo(priceCents, Money.toCents(maxPrice));
+            }
+            if (maxPrice == null) {
+                return builder.greaterThanOrEqualTo(priceCents, Money.toCents(minPrice));
+            }
+            return builder.between(priceCents, Money.toCents(minPrice), Money.toCents(maxPrice));
+        };
+    }
+
+    /**
+     * Restricts the expenses to descriptions containing a text, ignoring case. Wildcards in the text match literally.
+     *
+     * @param text the text.
+     * @return the filter, or null if no text is given.
+     */
+    public static Specification<Expense> descriptionContains(final String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        String pattern = "%" + text.toLowerCase(Locale.ROOT)
+                .replace(String.valueOf(LIKE_ESCAPE), LIKE_ESCAPE + String.valueOf(LIKE_ESCAPE))
+                .replace("%", LIKE_ESCAPE + "%")
+                .replace("_", LIKE_ESCAPE + "_") + "%";
+        return (root, query, builder) -> builder.like(builder.lower(root.get("description")), pattern, LIKE_ESCAPE);
+    }
+
+    /**
+     * Restricts the expenses to the ones after the cursor in the given order.
+     * The sort column gets its own bound next to the tie-break, e.g. date <= :date AND (date < :date OR id < :id),
+     * so a date cursor narrows the index range instead of being checked row by row.
+     *
+     * @param cursor the position of the last expense of the previous page.
+     * @param sort   the sort order.
+     * @return the filter, or null if there is no cursor.
+     */
+    public static Specification<Expense> after(final ExpenseSearchCursor cursor, final ExpenseSort sort) {
+        if (cursor == null) {
+            return null;
+        }
+        return (root, query, builder) -> {
+            Path<Long> id = root.get("id");
+            if (sort.byDate()) {
+                Path<LocalDate> date = root.get("date");
+                return sort.descending()
+                        ? builder.and(builder.lessThanOrEqualTo(date, cursor.getDate()),
+                        builder.or(builder.lessThan(date, cursor.getDate()), builder.lessThan(id, cursor.getId())))
+                        : builder.and(builder.greaterThanOrEqualTo(date, cursor.getDate()),
+                        builder.or(builder.greaterThan(date, cursor.getDate()), builder.greaterThan(id, cursor.getId())));
+            }
+            Path<Long> priceCents = root.get("priceCents");
+            return sort.descending()
+                    ? builder.and(builder.lessThanOrEqualTo(priceCents, cursor.getPriceCents()),
+                    builder.or(builder.lessThan(priceCents, cursor.getPriceCents()), builder.lessThan(id, cursor.getId())))
+                    : builder.and(builder.greaterThanOrEqualTo(priceCents, cursor.getPriceCents()),
+                    builder.or(builder.greaterThan(priceCents, cursor.getPriceCents()), builder.greaterThan(id, cursor.getId())));
+        };
+    }
+}
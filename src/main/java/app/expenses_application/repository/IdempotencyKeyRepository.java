@@ -0,0 +1,93 @@
+package app.expenses_application.repository;
+
+import app.expenses_application.dto.StoredResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository class keeping the responses of requests sent with an Idempotency-Key, so retries are recognized
+ * across restarts and application instances. Keys are stored as hashes, a row without status is claimed by a
+ * request still in progress until its lease expires.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Finds the response of a completed request.
+     *
+     * @param keyHash   the hash of the scoped key.
+     * @param notBefore the creation time before which keys are expired.
+     * @return the stored response, or empty if the key is unknown, expired or still in progress.
+     */
+    public Optional<StoredResponse> findCompleted(final String keyHash, final Instant notBefore) {
+        List<StoredResponse> responses = jdbcTemplate.query(
+                "SELECT status, content_type, body, request_hash FROM idempotency_key WHERE key_hash = ? AND status IS NOT NULL AND created_at >= ?",
+                (resultSet, row) -> new StoredResponse(resultSet.getInt("status"), resultSet.getString("content_type"),
+                        resultSet.getString("body").getBytes(StandardCharsets.UTF_8), resultSet.getString("request_hash")),
+                keyHash, Timestamp.from(notBefore));
+        return responses.stream().findFirst();
+    }
+
+    /**
+     * Claims a key for a request about to run. An expired row of the key, or a claim whose lease expired, is replaced.
+     *
+     * @param keyHash        the hash of the scoped key.
+     * @param requestHash    the hash of the request body.
+     * @param now            the creation time of the claim.
+     * @param notBefore      the creation time before which keys are expired.
+     * @param leaseNotBefore the creation time before which claims without a response are abandoned.
+     * @return true if the key was claimed, false if another request holds it.
+     */
+    public boolean claim(final String keyHash, final String requestHash, final Instant now, final Instant notBefore, final Instant leaseNotBefore) {
+        jdbcTemplate.update("DELETE FROM idempotency_key WHERE key_hash = ? AND (created_at < ? OR (status IS NULL AND created_at < ?))",
+                keyHash, Timestamp.from(notBefore), Timestamp.from(leaseNotBefore));
+        try {
+            jdbcTemplate.update("INSERT INTO idempotency_key (key_hash, request_hash, created_at) VALUES (?, ?, ?)",
+                    keyHash, requestHash, Timestamp.from(now));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores the response of a claimed key.
+     *
+     * @param keyHash  the hash of the scoped key.
+     * @param response the response of the request.
+     */
+    public void complete(final String keyHash, final StoredResponse response) {
+        jdbcTemplate.update("UPDATE idempotency_key SET status = ?, content_type = ?, body = ? WHERE key_hash = ?",
+                response.getStatus(), response.getContentType(), new String(response.getBody(), StandardCharsets.UTF_8), keyHash);
+    }
+
+    /**
+     * Releases a claimed key whose request failed, so a retry runs it again.
+     *
+     * @param keyHash the hash of the scoped key.
+     */
+    public void release(final String keyHash) {
+        jdbcTemplate.update("DELETE FROM idempotency_key WHERE key_hash = ? AND status IS NULL", keyHash);
+    }
+
+    /**
+     * Deletes the expired keys.
+     *
+     * @param notBefore the creation time before which keys are expired.
+     * @return the number of deleted keys.
+     */
+    public int deleteCreatedBefore(final Instant notBefore) {
+        return jdbcTemplate.update("DELETE FROM idempotency_key WHERE created_at < ?", Timestamp.from(notBefore));
+    }
+}
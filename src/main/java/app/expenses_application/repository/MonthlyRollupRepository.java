@@ -0,0 +1,77 @@
+package app.expenses_application.repository;
+
+import app.expenses_application.dto.CategoryTotal;
+import app.expenses_application.dto.ExpenseTotal;
+import app.expenses_application.model.MonthlyRollup;
+import app.expenses_application.model.MonthlyRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for managing the monthly expense rollups in the database.
+ */
+@Repository
+public interface MonthlyRollupRepository extends JpaRepository<MonthlyRollup, MonthlyRollupId> {
+
+    /**
+     * Sums and counts the expenses of a person over whole months.
+     *
+     * @param personId  the ID of the person.
+     * @param fromMonth the first month as yyyyMM, inclusive.
+     * @param toMonth   the last month as yyyyMM, inclusive.
+     * @return the total price and the number of expenses, total is 0 if there are none.
+     */
+    @Query("SELECT new app.expenses_application.dto.ExpenseTotal(COALESCE(SUM(r.totalCents), 0L), COALESCE(SUM(r.expenseCount), 0L)) " +
+            "FROM MonthlyRollup r WHERE r.personId = :personId AND r.rollupMonth BETWEEN :fromMonth AND :toMonth")
+    ExpenseTotal sumByPersonIdAndMonthBetween(@Param("personId") Long personId, @Param("fromMonth") Integer fromMonth, @Param("toMonth") Integer toMonth);
+
+    /**
+     * Sums, counts and averages the expenses of a person per category over whole months.
+     *
+     * @param personId  the ID of the person.
+     * @param fromMonth the first month as yyyyMM, inclusive.
+     * @param toMonth   the last month as yyyyMM, inclusive.
+     * @return one aggregate per category that has expenses, the largest total first.
+     */
+    @Query("SELECT new app.expenses_application.dto.CategoryTotal(r.category, SUM(r.totalCents), SUM(r.expenseCount)) " +
+            "FROM MonthlyRollup r WHERE r.personId = :personId AND r.rollupMonth BETWEEN :fromMonth AND :toMonth " +
+            "GROUP BY r.category HAVING SUM(r.expenseCount) > 0 ORDER BY SUM(r.totalCents) DESC")
+    List<CategoryTotal> sumByCategory(@Param("personId") Long personId, @Param("fromMonth") Integer fromMonth, @Param("toMonth") Integer toMonth);
+
+    /**
+     * Retrieves all rollup rows of a person that have expenses, oldest month first.
+     *
+     * @param personId the ID of the person.
+     * @return the rollup rows of the person.
+     */
+    @Query("SELECT r FROM MonthlyRollup r WHERE r.personId = :personId AND r.expenseCount > 0 ORDER BY r.rollupMonth")
+    List<MonthlyRollup> findByPersonId(@Param("personId") Long personId);
+
+    /**
+     * Deletes all rollup rows of a person.
+     *
+     * @param personId the ID of the person.
+     * @return the number of deleted rows.
+     */
+    @Modifying
+    @Query("DELETE FROM MonthlyRollup r WHERE r.personId = :personId")
+    int deleteByPersonId(@Param("personId") Long personId);
+
+    /**
+     * Recomputes all rollup rows of a person from the raw expenses. The old rows must be deleted first.
+     *
+     * @param personId the ID of the person.
+     * @return the number of inserted rows.
+     */
+    @Modifying
+    @Query("INSERT INTO MonthlyRollup (personId, rollupMonth, category, totalCents, expenseCount) " +
+            "SELECT e.person.id, YEAR(e.date) * 100 + MONTH(e.date), e.category, SUM(e.priceCents), COUNT(e) " +
+            "FROM Expense e WHERE e.person.id = :personId " +
+            "GROUP BY e.person.id, YEAR(e.date) * 100 + MONTH(e.date), e.category")
+    int insertFromExpenses(@Param("personId") Long personId);
+}
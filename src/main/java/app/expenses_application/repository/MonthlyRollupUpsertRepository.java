@@ -0,0 +1,69 @@
+package app.expenses_application.repository;
+
+import app.expenses_application.model.Category;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Repository class adding expenses to the monthly rollups with one native upsert statement.
+ * The row of a person, month and category is created by the first expense and incremented by the following ones,
+ * atomically in the database, so concurrent first expenses of the same row do not collide on its primary key.
+ * The upsert syntax depends on the database, MySQL, PostgreSQL and H2 are supported.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MonthlyRollupUpsertRepository {
+
+    private static final String MYSQL_UPSERT = "INSERT INTO monthly_rollup (person_id, rollup_month, category, total_cents, expense_count) "
+            + "VALUES (?1, ?2, ?3, ?4, ?5) "
+            + "ON DUPLICATE KEY UPDATE total_cents = total_cents + VALUES(total_cents), expense_count = expense_count + VALUES(expense_count)";
+
+    private static final String POSTGRESQL_UPSERT = "INSERT INTO monthly_rollup (person_id, rollup_month, category, total_cents, expense_count) "
+            + "VALUES (?1, ?2, ?3, ?4, ?5) ON CONFLICT (person_id, rollup_month, category) DO UPDATE SET "
+            + "total_cents = monthly_rollup.total_cents + EXCLUDED.total_cents, "
+            + "expense_count = monthly_rollup.expense_count + EXCLUDED.expense_count";
+
+    // H2 serves tests and local runs only. Its MERGE is one statement, but not atomic against a concurrent insert of the same row
+    private static final String H2_UPSERT = "MERGE INTO monthly_rollup r USING (SELECT CAST(?1 AS BIGINT) AS person_id, "
+            + "CAST(?2 AS INT) AS rollup_month, CAST(?3 AS VARCHAR(255)) AS category, CAST(?4 AS BIGINT) AS total_cents, "
+            + "CAST(?5 AS BIGINT) AS expense_count) d "
+            + "ON (r.person_id = d.person_id AND r.rollup_month = d.rollup_month AND r.category = d.category) "
+            + "WHEN MATCHED THEN UPDATE SET r.total_cents = r.total_cents + d.total_cents, r.expense_count = r.expense_count + d.expense_count "
+            + "WHEN NOT MATCHED THEN INSERT (person_id, rollup_month, category, total_cents, expense_count) "
+            + "VALUES (d.person_id, d.rollup_month, d.category, d.total_cents, d.expense_count)";
+
+    private final EntityManager entityManager;
+    private final DatabaseVendorResolver databaseVendorResolver;
+
+    /**
+     * Adds an amount and a number of expenses to a rollup row, creating the row if it does not exist yet.
+     *
+     * @param personId    the ID of the person.
+     * @param rollupMonth the month as yyyyMM.
+     * @param category    the category.
+     * @param amountCents the amount in cents to add, negative when expenses are removed.
+     * @param count       the number of expenses to add, negative when expenses are removed.
+     */
+    public void increment(final Long personId, final int rollupMonth, final Category category, final long amountCents, final long count) {
+        entityManager.createNativeQuery(upsert())
+                .setParameter(1, personId)
+                .setParameter(2, rollupMonth)
+                .setParameter(3, category.name())
+                .setParameter(4, amountCents)
+                .setParameter(5, count)
+                .executeUpdate();
+    }
+
+    private String upsert() {
+        switch (databaseVendorResolver.vendor()) {
+            case POSTGRESQL:
+                return POSTGRESQL_UPSERT;
+            case MYSQL:
+                return MYSQL_UPSERT;
+            default:
+                return H2_UPSERT;
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package app.expenses_application.repository;
 
+import app.expenses_application.dto.PersonListItem;
 import app.expenses_application.model.Person;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -27,4 +34,56 @@ public interface PersonRepository extends JpaRepository<Person, Long> {
      * @return an Optional containing the person if found, or empty if not found.
      */
     Optional<Person> findById(Long id);
+
+    /**
+     * Retrieves the IDs of all persons.
+     *
+     * @return the list of person IDs.
+     */
+    @Query("SELECT p.id FROM Person p")
+    List<Long> findAllIds();
+
+    /**
+     * Retrieves one page of the person listing as a column projection.
+     *
+     * @param pageable the page number, size and sort order.
+     * @return the page of persons.
+     */
+    @Query(value = "SELECT new app.expenses_application.dto.PersonListItem(p.id, p.email, p.name, p.role, p.enabled) FROM Person p",
+            countQuery = "SELECT COUNT(p) FROM Person p")
+    Page<PersonListItem> findListItems(Pageable pageable);
+
+    /**
+     * Retrieves one page of the person listing together with the number and total of the expenses of every person.
+     * The statistics are summed from the monthly rollups in the same query, persons without expenses get zeros.
+     *
+     * @param pageable the page number, size and sort order.
+     * @return the page of persons.
+     */
+    @Query(value = "SELECT new app.expenses_application.dto.PersonListItem(p.id, p.email, p.name, p.role, p.enabled, "
+            + "COALESCE(SUM(r.expenseCount), 0), COALESCE(SUM(r.totalCents), 0L)) "
+            + "FROM Person p LEFT JOIN MonthlyRollup r ON r.personId = p.id "
+            + "GROUP BY p.id, p.email, p.name, p.role, p.enabled",
+            countQuery = "SELECT COUNT(p) FROM Person p")
+    Page<PersonListItem> findListItemsWithExpenseStats(Pageable pageable);
+
+    /**
+     * Retrieves the email address of a person without loading the person.
+     *
+     * @param id the ID of the person.
+     * @return an Optional containing the email address if found, or empty if not found.
+     */
+    @Query("SELECT p.email FROM Person p WHERE p.id = :id")
+    Optional<String> findEmailById(@Param("id") Long id);
+
+    /**
+     * Deletes a person with a single statement. Unlike deleteById, the expense list is not loaded and cascaded,
+     * so the expenses must have been deleted before.
+     *
+     * @param id the ID of the person.
+     * @return the number of deleted persons.
+     */
+    @Modifying
+    @Query("DELETE FROM Person p WHERE p.id = :id")
+    int deletePersonById(@Param("id") Long id);
 }
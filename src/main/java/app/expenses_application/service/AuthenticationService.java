@@ -3,11 +3,12 @@ package app.expenses_application.service;
 import app.expenses_application.dto.LoginRequest;
 import app.expenses_application.dto.LoginResponse;
 import app.expenses_application.model.Person;
-import app.expenses_application.repository.PersonRepository;
 import app.expenses_application.util.JwtService;
+import app.expenses_application.util.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
 /**
@@ -16,24 +17,28 @@ import org.springframework.stereotype.Service;
 @Service
 @RequiredArgsConstructor
 public class AuthenticationService {
-    private final PersonRepository personRepository;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
 
     /**
      * Authenticates a user based on the provided login credentials.
+     * The response is built from the person the authentication provider already loaded, so the person is read once
+     * and the expense list is never loaded or serialized.
      *
      * @param request the login request containing the email and password.
-     * @return a LoginResponse containing the authentication token and the authenticated person.
+     * @return a LoginResponse containing the authentication token, its expiry and the id, name and role of the person.
      */
     public LoginResponse authenticate(final LoginRequest request) {
-        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword()));
-        Person person = personRepository.findByEmail(request.getEmail())
-                .orElseThrow(); // handle appropriately if person not found
-        String jwtToken = jwtService.generateToken(person);
+        Authentication authentication = authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword()));
+        Person person = (Person) authentication.getPrincipal();
+        VerifiedToken token = jwtService.issueToken(person);
         return LoginResponse.builder()
-                .token(jwtToken)
-                .person(person)
+                .token(token.getToken())
+                .tokenExpiresAt(token.getExpiration())
+                .id(person.getId())
+                .name(person.getName())
+                .role(person.getRole())
                 .build();
     }
 }
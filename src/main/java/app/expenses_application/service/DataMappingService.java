@@ -2,14 +2,11 @@ package app.expenses_application.service;
 
 import app.expenses_application.exception.NoPersonFoundException;
 import app.expenses_application.model.Expense;
-import app.expenses_application.model.Person;
 import app.expenses_application.repository.PersonRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
-
 /**
  * Service class for mapping data between entities.
  */
@@ -21,17 +18,18 @@ public class DataMappingService {
 
     /**
      * Sets the person ID to the expense.
+     * Only a reference to the person is set, the person is not loaded. ExpenseService.add reports a missing person
+     * when the foreign key rejects the insert.
      *
      * @param expense  the expense to be associated with the person.
      * @param personId the ID of the person.
-     * @throws NoPersonFoundException if no person is found with the provided ID.
+     * @throws NoPersonFoundException if no person ID is provided.
      */
     public void setPersonIdToExpense(final Expense expense, final Long personId) throws NoPersonFoundException {
-        Optional<Person> personOptional = personRepository.findById(personId);
-        if (personOptional.isEmpty()) {
+        if (personId == null) {
             log.error("No person found with ID: {}", personId);
             throw new NoPersonFoundException("No person found with ID: " + personId);
         }
-        expense.setPerson(personOptional.get());
+        expense.setPerson(personRepository.getById(personId));
     }
 }
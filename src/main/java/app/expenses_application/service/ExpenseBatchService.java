@@ -0,0 +1,100 @@
+package app.expenses_application.service;
+
+import app.expenses_application.dto.ExpenseBatchResponse;
+import app.expenses_application.exception.NoPersonFoundException;
+import app.expenses_application.model.Expense;
+import app.expenses_application.model.Person;
+import app.expenses_application.repository.PersonRepository;
+import app.expenses_application.validator.ExpenseFieldsValidator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service class for adding many expenses of one person at once.
+ * Expenses are inserted in JDBC batches, the persistence context is flushed and cleared after every batch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExpenseBatchService {
+
+    private final EntityManager entityManager;
+    private final PersonRepository personRepository;
+    private final ExpenseFieldsValidator expenseFieldsValidator;
+    private final MonthlyRollupService monthlyRollupService;
+    private final ExpenseSummaryCache expenseSummaryCache;
+    private final ExpenseTextIndex expenseTextIndex;
+    private final ExpenseColumnStore expenseColumnStore;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    /**
+     * Validates and adds the expenses of a person in one transaction.
+     * Invalid expenses are skipped and reported, the valid ones are added.
+     * Each flushed batch is handed to the rollups and the in-memory indexes right away, so only the IDs of the added
+     * expenses are kept until the end.
+     *
+     * @param personId the ID of the person the expenses belong to.
+     * @param expenses the expenses to be added.
+     * @return the IDs of the added expenses and the errors of the rejected ones.
+     * @throws NoPersonFoundException if no person is found with the provided ID.
+     */
+    @Transactional
+    public ExpenseBatchResponse addAll(final Long personId, final List<Expense> expenses) throws NoPersonFoundException {
+        Person person = personRepository.findById(personId).orElse(null);
+        if (person == null) {
+            log.error("No person found with ID: {}", personId);
+            throw new NoPersonFoundException("No person found with ID: " + personId);
+        }
+        log.info("Adding {} expenses for person ID {} in batches of {}...", expenses.size(), personId, batchSize);
+
+        List<ExpenseBatchResponse.ItemError> errors = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        List<Expense> chunk = new ArrayList<>();
+        for (int index = 0; index < expenses.size(); index++) {
+            Expense expense = expenses.get(index);
+            if (expense == null || !expenseFieldsValidator.validateExpenseFields(expense)) {
+                errors.add(new ExpenseBatchResponse.ItemError(index, "All fields must be filled and price must be more than 0."));
+                continue;
+            }
+            expense.setId(null);
+            expense.setPerson(person);
+            entityManager.persist(expense);
+            chunk.add(expense);
+            if (chunk.size() == batchSize) {
+                entityManager.flush();
+                applyAdded(personId, chunk, ids);
+                entityManager.clear();
+                person = entityManager.getReference(Person.class, personId);
+            }
+        }
+        applyAdded(personId, chunk, ids);
+        if (!ids.isEmpty()) {
+            expenseSummaryCache.invalidateAfterCommit(personId);
+        }
+        return ExpenseBatchResponse.builder()
+                .added(ids.size())
+                .ids(ids)
+                .errors(errors)
+                .build();
+    }
+
+    private void applyAdded(final Long personId, final List<Expense> chunk, final List<Long> ids) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        monthlyRollupService.applyAdded(chunk);
+        expenseTextIndex.addAfterCommit(personId, chunk);
+        expenseColumnStore.addAfterCommit(personId, chunk);
+        chunk.forEach(expense -> ids.add(expense.getId()));
+        chunk.clear();
+    }
+}
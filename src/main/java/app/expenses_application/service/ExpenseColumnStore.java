@@ -0,0 +1,418 @@
+package app.expenses_application.service;
+
+import app.expenses_application.dto.CategoryTotal;
+import app.expenses_application.dto.ExpenseTotal;
+import app.expenses_application.dto.ExpenseView;
+import app.expenses_application.model.Category;
+import app.expenses_application.model.Expense;
+import app.expenses_application.repository.ExpenseRepository;
+import app.expenses_application.util.Aggregations;
+import app.expenses_application.util.Money;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Optional in-memory column store of expenses, partitioned per person, for analytics-heavy users.
+ * A partition holds the epoch day, category ordinal, price in cents and ID of every expense of a person as primitive
+ * columns sorted by date and ID, so a date range is two binary searches and an aggregate is a tight loop over it.
+ * A partition is loaded on the first query of a person. It is immutable, added and deleted expenses replace it with
+ * an updated copy once their transaction commits. Partitions are weighed by the size of their columns and the least
+ * recently used ones are evicted when all of them together exceed the memory budget.
+ */
+@Slf4j
+@Component
+public class ExpenseColumnStore {
+
+    private static final Category[] CATEGORIES = Category.values();
+    private static final int ROW_BYTES = Integer.BYTES + Byte.BYTES + Long.BYTES + Long.BYTES;
+    private static final int PARTITION_OVERHEAD_BYTES = 128;
+
+    private final ExpenseRepository expenseRepository;
+    private final boolean enabled;
+    private final Cache<Long, PersonColumns> partitions;
+
+    /**
+     * Creates the column store.
+     *
+     * @param expenseRepository the repository the partitions are loaded from.
+     * @param enabled           whether the analytics queries are answered by the store.
+     * @param memoryBudget      the maximum size of the columns of all loaded partitions.
+     */
+    public ExpenseColumnStore(final ExpenseRepository expenseRepository,
+                              @Value("${expense.column-store.enabled:false}") boolean enabled,
+                              @Value("${expense.column-store.memory-budget:64MB}") DataSize memoryBudget) {
+        this.expenseRepository = expenseRepository;
+        this.enabled = enabled;
+        this.partitions = Caffeine.newBuilder()
+                .maximumWeight(memoryBudget.toBytes())
+                .weigher((Long personId, PersonColumns columns) -> columns.weight())
+                .build();
+    }
+
+    /**
+     * Checks if the analytics queries are answered by the store instead of the DB.
+     *
+     * @return true if the store is enabled, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sums and counts the expenses of a person within a date range.
+     *
+     * @param personId  the ID of the person.
+     * @param startDate the first day of the range, inclusive.
+     * @param endDate   the last day of the range, inclusive.
+     * @return the total price and the number of expenses.
+     */
+    public ExpenseTotal total(final Long personId, final LocalDate startDate, final LocalDate endDate) {
+        PersonColumns columns = partition(personId);
+        int from = columns.lowerBound(startDate.toEpochDay());
+        int to = columns.upperBound(endDate.toEpochDay());
+        return new ExpenseTotal(Aggregations.sum(columns.cents, from, to), (long) Math.max(to - from, 0));
+    }
+
+    /**
+     * Sums, counts and averages the expenses of a person per category within a date range.
+     *
+     * @param personId  the ID of the person.
+     * @param startDate the first day of the range, inclusive.
+     * @param endDate   the last day of the range, inclusive.
+     * @return one aggregate per category that has expenses, the largest total first.
+     */
+    public List<CategoryTotal> categoryBreakdown(final Long personId, final LocalDate startDate, final LocalDate endDate) {
+        PersonColumns columns = partition(personId);
+        int from = columns.lowerBound(startDate.toEpochDay());
+        int to = columns.upperBound(endDate.toEpochDay());
+        long[] totals = new long[CATEGORIES.length];
+        long[] counts = new long[CATEGORIES.length];
+        Aggregations.sumByBucket(columns.cents, columns.categories, from, to, totals);
+        Aggregations.countByBucket(columns.categories, from, to, counts);
+
+        List<CategoryTotal> categoryTotals = new ArrayList<>();
+        for (int ordinal = 0; ordinal < CATEGORIES.length; ordinal++) {
+            if (counts[ordinal] > 0) {
+                categoryTotals.add(new CategoryTotal(CATEGORIES[ordinal], totals[ordinal], counts[ordinal]));
+            }
+        }
+        categoryTotals.sort(Comparator.comparing(CategoryTotal::getTotal).reversed());
+        return categoryTotals;
+    }
+
+    /**
+     * Finds the most expensive expenses of a person within a date range, newest first on equal prices.
+     * The views carry no description, the store does not keep them.
+     *
+     * @param personId  the ID of the person.
+     * @param startDate the first day of the range, inclusive.
+     * @param endDate   the last day of the range, inclusive.
+     * @param limit     the maximum number of expenses.
+     * @return the most expensive expenses, the most expensive first.
+     */
+    public List<ExpenseView> top(final Long personId, final LocalDate startDate, final LocalDate endDate, final int limit) {
+        PersonColumns columns = partition(personId);
+        int from = columns.lowerBound(startDate.toEpochDay());
+        int to = columns.upperBound(endDate.toEpochDay());
+        // A min-heap of row indexes keeps the best rows seen so far, its root is the first one to give way
+        int[] heap = new int[Math.max(Math.min(limit, to - from), 0)];
+        int size = 0;
+        for (int row = from; row < to; row++) {
+            if (size < heap.length) {
+                heap[size] = row;
+                columns.siftUp(heap, size++);
+            } else if (size > 0 && columns.ranksAbove(row, heap[0])) {
+                heap[0] = row;
+                columns.siftDown(heap, size);
+            }
+        }
+        ExpenseView[] top = new ExpenseView[size];
+        while (size > 0) {
+            top[size - 1] = columns.view(heap[0]);
+            heap[0] = heap[--size];
+            columns.siftDown(heap, size);
+        }
+        return Arrays.asList(top);
+    }
+
+    /**
+     * Adds expenses to the partition of a person once the current transaction commits, or right away outside a transaction.
+     * Only a partition in memory is updated, any other partition is loaded with the expenses later on.
+     * A partition still loading is updated once the load completes, compute blocks on the load where computeIfPresent
+     * would see no partition yet. Expenses the load already read are skipped.
+     *
+     * @param personId the ID of the person the expenses belong to.
+     * @param expenses the added expenses.
+     */
+    public void addAfterCommit(final Long personId, final Collection<Expense> expenses) {
+        if (!enabled || personId == null || expenses.isEmpty()) {
+            return;
+        }
+        PersonColumns added = PersonColumns.of(expenses.size());
+        for (Expense expense : expenses) {
+            added.append(expense.getDate().toEpochDay(), expense.getCategory(), expense.getPriceCents(), expense.getId());
+        }
+        afterCommit(() -> partitions.asMap().compute(personId, (id, columns) -> columns == null ? null : columns.withAdded(added)));
+    }
+
+    /**
+     * Removes a deleted expense from the partition of a person once the current transaction commits.
+     *
+     * @param personId  the ID of the person the expense belonged to.
+     * @param expenseId the ID of the deleted expense.
+     */
+    public void removeAfterCommit(final Long personId, final Long expenseId) {
+        if (!enabled || personId == null) {
+            return;
+        }
+        afterCommit(() -> partitions.asMap().compute(personId, (id, columns) -> columns == null ? null : columns.withRemoved(expenseId)));
+    }
+
+    /**
+     * Drops the partition of a deleted person once the current transaction commits.
+     *
+     * @param personId the ID of the person.
+     */
+    public void dropAfterCommit(final Long personId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> partitions.invalidate(personId));
+    }
+
+    /**
+     * Returns the size of the columns of all loaded partitions, after pending evictions.
+     *
+     * @return the number of bytes counted against the memory budget.
+     */
+    public long memoryUsage() {
+        partitions.cleanUp();
+        return partitions.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    private PersonColumns partition(final Long personId) {
+        return partitions.get(personId, this::load);
+    }
+
+    private PersonColumns load(final Long personId) {
+        log.info("Loading the expense columns of person ID {} from the DB...", personId);
+        List<ExpenseView> expenses = expenseRepository.findColumnsByPersonId(personId);
+        PersonColumns columns = PersonColumns.of(expenses.size());
+        for (ExpenseView expense : expenses) {
+            columns.append(expense.getDate().toEpochDay(), expense.getCategory(), Money.toCents(expense.getPrice()), expense.getId());
+        }
+        return columns;
+    }
+
+    private void afterCommit(final Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * The columns of one person, sorted by epoch day and ID. Only the store writes them, before they are published.
+     */
+    private static final class PersonColumns {
+        private final int[] days;
+        private final byte[] categories;
+        private final long[] cents;
+        private final long[] ids;
+        private int size;
+
+        private PersonColumns(final int capacity) {
+            days = new int[capacity];
+            categories = new byte[capacity];
+            cents = new long[capacity];
+            ids = new long[capacity];
+        }
+
+        static PersonColumns of(final int capacity) {
+            return new PersonColumns(capacity);
+        }
+
+        void append(final long epochDay, final Category category, final long priceCents, final long id) {
+            days[size] = (int) epochDay;
+            categories[size] = (byte) category.ordinal();
+            cents[size] = priceCents;
+            ids[size] = id;
+            size++;
+        }
+
+        int weight() {
+            return (int) Math.min((long) days.length * ROW_BYTES + PARTITION_OVERHEAD_BYTES, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Returns the first row on or after the day.
+         */
+        int lowerBound(final long epochDay) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (days[middle] < epochDay) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the first row after the day.
+         */
+        int upperBound(final long epochDay) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (days[middle] <= epochDay) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        ExpenseView view(final int row) {
+            return new ExpenseView(ids[row], CATEGORIES[categories[row]], cents[row], LocalDate.ofEpochDay(days[row]));
+        }
+
+        /**
+         * Checks if a row is more expensive than another one, or as expensive and newer.
+         */
+        boolean ranksAbove(final int row, final int other) {
+            return cents[row] > cents[other] || cents[row] == cents[other] && row > other;
+        }
+
+        void siftUp(final int[] heap, int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!ranksAbove(heap[parent], heap[position])) {
+                    return;
+                }
+                swap(heap, parent, position);
+                position = parent;
+            }
+        }
+
+        void siftDown(final int[] heap, final int heapSize) {
+            int position = 0;
+            while (true) {
+                int lowest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < heapSize && ranksAbove(heap[lowest], heap[left])) {
+                    lowest = left;
+                }
+                if (right < heapSize && ranksAbove(heap[lowest], heap[right])) {
+                    lowest = right;
+                }
+                if (lowest == position) {
+                    return;
+                }
+                swap(heap, position, lowest);
+                position = lowest;
+            }
+        }
+
+        /**
+         * Returns a copy with the added rows merged in. Rows already present are skipped, as a partition loaded
+         * after the commit of the added expenses already holds them.
+         */
+        PersonColumns withAdded(final PersonColumns added) {
+            Integer[] order = new Integer[added.size];
+            for (int row = 0; row < added.size; row++) {
+                order[row] = row;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingInt(row -> added.days[row]).thenComparingLong(row -> added.ids[row]));
+
+            PersonColumns merged = of(size + added.size);
+            int row = 0;
+            for (int addedRow : order) {
+                if (contains(added.days[addedRow], added.ids[addedRow])) {
+                    continue;
+                }
+                while (row < size && (days[row] < added.days[addedRow] || days[row] == added.days[addedRow] && ids[row] < added.ids[addedRow])) {
+                    merged.copy(this, row++);
+                }
+                merged.copy(added, addedRow);
+            }
+            while (row < size) {
+                merged.copy(this, row++);
+            }
+            return merged;
+        }
+
+        /**
+         * Returns a copy without the row of the expense, or this partition if it does not hold the expense.
+         */
+        PersonColumns withRemoved(final long id) {
+            int removed = -1;
+            for (int row = 0; row < size; row++) {
+                if (ids[row] == id) {
+                    removed = row;
+                    break;
+                }
+            }
+            if (removed < 0) {
+                return this;
+            }
+            PersonColumns remaining = of(size - 1);
+            for (int row = 0; row < size; row++) {
+                if (row != removed) {
+                    remaining.copy(this, row);
+                }
+            }
+            return remaining;
+        }
+
+        private boolean contains(final int epochDay, final long id) {
+            for (int row = lowerBound(epochDay); row < size && days[row] == epochDay; row++) {
+                if (ids[row] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void copy(final PersonColumns source, final int row) {
+            days[size] = source.days[row];
+            categories[size] = source.categories[row];
+            cents[size] = source.cents[row];
+            ids[size] = source.ids[row];
+            size++;
+        }
+
+        private static void swap(final int[] heap, final int first, final int second) {
+            int row = heap[first];
+            heap[first] = heap[second];
+            heap[second] = row;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package app.expenses_application.service;
+
+import app.expenses_application.util.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Service class for exporting the full expense history of a person.
+ * Rows are read from a forward-only JDBC cursor and written to the output one by one,
+ * so memory use does not depend on the number of expenses. MySQL Connector/J ignores the fetch size and reads the
+ * whole result unless useCursorFetch=true is set on the JDBC URL, so without it the rows are streamed one by one instead.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExpenseExportService {
+
+    private static final String EXPORT_QUERY =
+            "SELECT id, date, category, price_cents, description FROM expense WHERE person_id = ? ORDER BY date, id";
+    private static final String CSV_HEADER = "id,date,category,price,description";
+    private static final String MYSQL_DRIVER = "mysql connector";
+    private static final String MYSQL_CURSOR_FETCH = "usecursorfetch=true";
+    private static final int MYSQL_ROW_STREAMING = Integer.MIN_VALUE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${expense.export.fetch-size:500}")
+    private int fetchSize;
+
+    /**
+     * Supported export formats.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String fileExtension;
+    }
+
+    /**
+     * Writes all expenses of a person to the output stream, oldest first.
+     *
+     * @param personId     the ID of the person whose expenses are to be exported.
+     * @param format       the export format.
+     * @param outputStream the stream the export is written to.
+     */
+    public void export(final Long personId, final ExportFormat format, final OutputStream outputStream) {
+        log.info("Exporting expenses of person ID {} as {}...", personId, format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        // PostgreSQL only uses a cursor for the fetch size inside a transaction
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                RowCallbackHandler rowWriter = format == ExportFormat.CSV ? csvRowWriter(writer) : ndjsonRowWriter(writer);
+                jdbcTemplate.query(exportStatement(personId), rowWriter);
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private PreparedStatementCreator exportStatement(final Long personId) {
+        return connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXPORT_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize(connection.getMetaData()));
+            statement.setLong(1, personId);
+            return statement;
+        };
+    }
+
+    /**
+     * Returns the fetch size that keeps the driver from reading the whole result into memory.
+     */
+    private int fetchSize(final DatabaseMetaData metaData) throws SQLException {
+        String driverName = metaData.getDriverName() == null ? "" : metaData.getDriverName().toLowerCase(Locale.ROOT);
+        String url = metaData.getURL() == null ? "" : metaData.getURL().toLowerCase(Locale.ROOT);
+        if (driverName.contains(MYSQL_DRIVER) && !url.contains(MYSQL_CURSOR_FETCH)) {
+            return MYSQL_ROW_STREAMING;
+        }
+        return fetchSize;
+    }
+
+    private RowCallbackHandler ndjsonRowWriter(final Writer writer) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        // Lines are separated by hand and flushing is left to the buffered writer
+        generator.setRootValueSeparator(null);
+        generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        return resultSet -> {
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("id", resultSet.getLong("id"));
+                generator.writeStringField("date", resultSet.getDate("date").toLocalDate().toString());
+                generator.writeStringField("category", resultSet.getString("category"));
+                generator.writeNumberField("price", Money.toAmount(resultSet.getLong("price_cents")));
+                generator.writeStringField("description", resultSet.getString("description"));
+                generator.writeEndObject();
+                generator.flush();
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private RowCallbackHandler csvRowWriter(final Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        return resultSet -> {
+            try {
+                writer.write(Long.toString(resultSet.getLong("id")));
+                writer.write(',');
+                writer.write(resultSet.getDate("date").toLocalDate().toString());
+                writer.write(',');
+                writer.write(resultSet.getString("category"));
+                writer.write(',');
+                writer.write(Double.toString(Money.toAmount(resultSet.getLong("price_cents"))));
+                writer.write(',');
+                writer.write(csvValue(resultSet.getString("description")));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Quotes a CSV value if it contains a separator, a quote or a line break.
+     *
+     * @param value the value, may be null.
+     * @return the value ready to be written to a CSV line.
+     */
+    public static String csvValue(final String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
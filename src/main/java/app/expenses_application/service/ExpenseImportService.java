@@ -0,0 +1,239 @@
+package app.expenses_application.service;
+
+import app.expenses_application.dto.ExpenseBatchResponse;
+import app.expenses_application.dto.ExpenseImportStatus;
+import app.expenses_application.exception.MandatoryFieldsMissingException;
+import app.expenses_application.exception.NoImportFoundException;
+import app.expenses_application.exception.NoPersonFoundException;
+import app.expenses_application.model.Category;
+import app.expenses_application.model.Expense;
+import app.expenses_application.repository.PersonRepository;
+import app.expenses_application.util.CsvReader;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service class for importing bank statements from CSV files.
+ * The file is parsed one record at a time and expenses are committed in fixed-size chunks,
+ * so neither the file nor all the expenses are held in memory. A failure rolls back the current chunk only.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExpenseImportService {
+
+    private static final String DATE_COLUMN = "date";
+    private static final String CATEGORY_COLUMN = "category";
+    private static final String PRICE_COLUMN = "price";
+    private static final String DESCRIPTION_COLUMN = "description";
+
+    private final ExpenseBatchService expenseBatchService;
+    private final PersonRepository personRepository;
+
+    @Value("${expense.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${expense.import.threads:2}")
+    private int threads;
+
+    private ExecutorService executor;
+    private Cache<String, ImportProgress> imports;
+
+    /**
+     * Starts the import worker threads and the store of import progress.
+     */
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(threads);
+        imports = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofDays(1))
+                .build();
+    }
+
+    /**
+     * Stops the import worker threads.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stores the uploaded CSV file and starts importing it in the background.
+     * The header must contain date, category and price columns, description is optional.
+     *
+     * @param personId the ID of the person the expenses belong to.
+     * @param file     the uploaded CSV file.
+     * @return the initial status of the import, including its ID.
+     * @throws NoPersonFoundException if no person is found with the provided ID.
+     * @throws MandatoryFieldsMissingException if the header misses mandatory columns.
+     * @throws IOException if the file cannot be stored.
+     */
+    public ExpenseImportStatus start(final Long personId, final MultipartFile file) throws NoPersonFoundException, MandatoryFieldsMissingException, IOException {
+        if (!personRepository.existsById(personId)) {
+            log.error("No person found with ID: {}", personId);
+            throw new NoPersonFoundException("No person found with ID: " + personId);
+        }
+        Path csvFile = Files.createTempFile("expense-import-", ".csv");
+        file.transferTo(csvFile);
+        Map<String, Integer> columns;
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8))) {
+            columns = readColumns(reader.readRecord());
+        } catch (MandatoryFieldsMissingException | IOException e) {
+            Files.deleteIfExists(csvFile);
+            throw e;
+        }
+
+        String importId = UUID.randomUUID().toString();
+        ImportProgress progress = new ImportProgress();
+        imports.put(importId, progress);
+        log.info("Starting import {} of {} for person ID {}...", importId, file.getOriginalFilename(), personId);
+        executor.execute(() -> runImport(importId, personId, csvFile, columns, progress));
+        return progress.toStatus(importId);
+    }
+
+    /**
+     * Retrieves the progress of an import.
+     *
+     * @param importId the ID of the import.
+     * @return the status of the import.
+     * @throws NoImportFoundException if no import is known with the given ID.
+     */
+    public ExpenseImportStatus getStatus(final String importId) throws NoImportFoundException {
+        ImportProgress progress = imports.getIfPresent(importId);
+        if (progress == null) {
+            log.error("No import found with ID: {}", importId);
+            throw new NoImportFoundException("No import found with ID: " + importId);
+        }
+        return progress.toStatus(importId);
+    }
+
+    private void runImport(final String importId, final Long personId, final Path csvFile, final Map<String, Integer> columns, final ImportProgress progress) {
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8))) {
+            reader.readRecord(); // header
+            List<Expense> chunk = new ArrayList<>(chunkSize);
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                progress.rowsRead.incrementAndGet();
+                Expense expense = toExpense(record, columns);
+                if (expense == null) {
+                    progress.rejected.incrementAndGet();
+                    continue;
+                }
+                chunk.add(expense);
+                if (chunk.size() == chunkSize) {
+                    commitChunk(personId, chunk, progress);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                commitChunk(personId, chunk, progress);
+            }
+            progress.state = ExpenseImportStatus.State.COMPLETED;
+            log.info("Import {} completed: {} imported, {} rejected.", importId, progress.imported.get(), progress.rejected.get());
+        } catch (Exception e) {
+            log.error("Import {} failed after {} rows.", importId, progress.rowsRead.get(), e);
+            progress.message = "Import stopped after " + progress.rowsRead.get() + " rows: " + e.getMessage();
+            progress.state = ExpenseImportStatus.State.FAILED;
+        } finally {
+            try {
+                Files.deleteIfExists(csvFile);
+            } catch (IOException e) {
+                log.error("Could not delete {}.", csvFile, e);
+            }
+        }
+    }
+
+    private void commitChunk(final Long personId, final List<Expense> chunk, final ImportProgress progress) throws NoPersonFoundException {
+        ExpenseBatchResponse response = expenseBatchService.addAll(personId, chunk);
+        progress.imported.addAndGet(response.getAdded());
+        progress.rejected.addAndGet(response.getErrors().size());
+    }
+
+    private static Map<String, Integer> readColumns(final List<String> header) throws MandatoryFieldsMissingException {
+        Map<String, Integer> columns = new HashMap<>();
+        if (header != null) {
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+        }
+        if (!columns.containsKey(DATE_COLUMN) || !columns.containsKey(CATEGORY_COLUMN) || !columns.containsKey(PRICE_COLUMN)) {
+            log.error("CSV header must contain date, category and price columns.");
+            throw new MandatoryFieldsMissingException("CSV header must contain date, category and price columns.");
+        }
+        return columns;
+    }
+
+    /**
+     * Maps a CSV record to an expense.
+     *
+     * @return the expense, or null if a value cannot be parsed.
+     */
+    private static Expense toExpense(final List<String> record, final Map<String, Integer> columns) {
+        try {
+            Expense expense = new Expense();
+            expense.setDate(LocalDate.parse(value(record, columns, DATE_COLUMN)));
+            expense.setCategory(Category.valueOf(value(record, columns, CATEGORY_COLUMN).toUpperCase(Locale.ROOT)));
+            expense.setPrice(Double.parseDouble(value(record, columns, PRICE_COLUMN)));
+            String description = value(record, columns, DESCRIPTION_COLUMN);
+            expense.setDescription(description == null || description.isEmpty() ? null : description);
+            return expense;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String value(final List<String> record, final Map<String, Integer> columns, final String column) {
+        Integer index = columns.get(column);
+        return index == null || index >= record.size() ? null : record.get(index).trim();
+    }
+
+    /**
+     * Progress of a running import, updated by the worker thread and read by status requests.
+     */
+    private static class ImportProgress {
+
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private volatile ExpenseImportStatus.State state = ExpenseImportStatus.State.RUNNING;
+        private volatile String message;
+
+        private ExpenseImportStatus toStatus(final String importId) {
+            return ExpenseImportStatus.builder()
+                    .importId(importId)
+                    .state(state)
+                    .rowsRead(rowsRead.get())
+                    .imported(imported.get())
+                    .rejected(rejected.get())
+                    .message(message)
+                    .build();
+        }
+    }
+}
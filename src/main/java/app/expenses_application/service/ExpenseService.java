@@ -1,28 +1,60 @@
 package app.expenses_application.service;
 
+import app.expenses_application.dto.CategoryTotal;
+import app.expenses_application.dto.ExpenseCursor;
+import app.expenses_application.dto.ExpensePage;
+import app.expenses_application.dto.ExpenseSearchCriteria;
+import app.expenses_application.dto.ExpenseSearchCursor;
+import app.expenses_application.dto.ExpenseTotal;
+import app.expenses_application.dto.ExpenseView;
+import app.expenses_application.dto.SeriesPoint;
+import app.expenses_application.dto.YearTotal;
+import app.expenses_application.exception.InvalidCursorException;
 import app.expenses_application.exception.MandatoryFieldsMissingException;
 import app.expenses_application.exception.NoCategoriesFoundException;
 import app.expenses_application.exception.NoExpensesFoundException;
 import app.expenses_application.exception.NoPersonFoundException;
 import app.expenses_application.model.Category;
 import app.expenses_application.model.Expense;
-import app.expenses_application.model.Person;
+import app.expenses_application.model.ExpenseSort;
+import app.expenses_application.model.Granularity;
+import app.expenses_application.model.MonthlyRollup;
 import app.expenses_application.repository.ExpenseRepository;
+import app.expenses_application.repository.ExpenseSearchRepository;
+import app.expenses_application.repository.ExpenseSeriesRepository;
+import app.expenses_application.repository.ExpenseSpecifications;
+import app.expenses_application.repository.MonthlyRollupRepository;
 import app.expenses_application.repository.PersonRepository;
+import app.expenses_application.util.Aggregations;
+import app.expenses_application.util.Money;
 import app.expenses_application.validator.ExpenseFieldsValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Service class for managing expenses.
+ * Reads run in read-only transactions, so Hibernate neither flushes nor keeps dirty-checking snapshots for them.
  */
 @Service
 @RequiredArgsConstructor
@@ -31,15 +63,37 @@ public class ExpenseService {
 	private final ExpenseRepository expenseRepository;
 	private final ExpenseFieldsValidator expenseFieldsValidator;
 	private final PersonRepository personRepository;
+	private final ExpenseSeriesRepository expenseSeriesRepository;
+	private final ExpenseSearchRepository expenseSearchRepository;
+	private final MonthlyRollupRepository monthlyRollupRepository;
+	private final MonthlyRollupService monthlyRollupService;
+	private final ExpenseSummaryCache expenseSummaryCache;
+	private final ExpenseTextIndex expenseTextIndex;
+	private final ExpenseColumnStore expenseColumnStore;
+	private final PlatformTransactionManager transactionManager;
+
+	@Value("${expense.page.default-size:50}")
+	private int defaultPageSize;
+
+	@Value("${expense.page.max-size:500}")
+	private int maxPageSize;
+
+	@Value("${expense.series.max-buckets:1000}")
+	private int maxSeriesBuckets;
 
 	/**
-	 * Adds a new expense.
+	 * Adds a new expense and updates the monthly rollup in the same transaction.
+	 * The person is usually an unloaded reference, a missing person is detected by the foreign key when the expense is inserted
+	 * and confirmed by a lookup of the person, since databases adopted at the baseline keep their own constraint names.
+	 * The cached summaries of the person are invalidated once the transaction commits.
 	 *
 	 * @param expense the expense to be added.
 	 *
 	 * @throws MandatoryFieldsMissingException if mandatory fields are missing in the expense.
+	 * @throws NoPersonFoundException if the person of the expense does not exist.
 	 */
-	public void add(final Expense expense) throws MandatoryFieldsMissingException {
+	@Transactional(rollbackFor = NoPersonFoundException.class)
+	public void add(final Expense expense) throws MandatoryFieldsMissingException, NoPersonFoundException {
 		if (expense == null) {
 			log.error("Expense is null.");
 			throw new NullPointerException("Expense is null.");
@@ -48,25 +102,49 @@ public class ExpenseService {
 			log.error("All fields must be filled and price must be more than 0.");
 			throw new MandatoryFieldsMissingException("All fields must be filled and price must be more than 0.");
 		}
-		expenseRepository.save(expense);
+		try {
+			expenseRepository.saveAndFlush(expense);
+		} catch (DataIntegrityViolationException e) {
+			Long personId = expense.getPerson() == null ? null : expense.getPerson().getId();
+			if (!violatesConstraint(e) || personId == null || personExists(personId)) {
+				throw e;
+			}
+			log.error("No person found with ID: {}", personId);
+			throw new NoPersonFoundException("No person found with ID: " + personId);
+		}
+		monthlyRollupService.applyAdded(expense);
+		if (expense.getPerson() != null) {
+			expenseSummaryCache.invalidateAfterCommit(expense.getPerson().getId());
+			expenseTextIndex.addAfterCommit(expense.getPerson().getId(), List.of(expense));
+			expenseColumnStore.addAfterCommit(expense.getPerson().getId(), List.of(expense));
+		}
 	}
 
 	/**
-	 * Deletes an expense by its ID.
+	 * Deletes an expense by its ID and updates the monthly rollup in the same transaction.
+	 * Only the columns the rollup needs are read, the expense is then deleted by a single statement.
+	 * The cached summaries of the person are invalidated once the transaction commits.
 	 *
 	 * @param id the ID of the expense to be deleted.
 	 *
 	 * @throws NoExpensesFoundException if no expense is found with the given ID.
 	 */
+	@Transactional(rollbackFor = NoExpensesFoundException.class)
 	public void deleteById(final long id) throws NoExpensesFoundException {
-		log.info("Looking for expense with {} id in the DB...", id);
-		var expense = expenseRepository.findById(id);
-		checkIfExpensesExists(expense.isEmpty(), "No expense found.");
-		expenseRepository.deleteById(id);
+		log.info("Deleting expense with {} id from the DB...", id);
+		var rollupShare = expenseRepository.findRollupShareById(id);
+		checkIfExpensesExists(rollupShare.isEmpty(), "No expense found.");
+		// Zero rows means a concurrent request deleted it first
+		checkIfExpensesExists(expenseRepository.deleteExpenseById(id) == 0, "No expense found.");
+		monthlyRollupService.applyDeleted(rollupShare.get());
+		expenseSummaryCache.invalidateAfterCommit(rollupShare.get().getPersonId());
+		expenseTextIndex.removeAfterCommit(rollupShare.get().getPersonId(), id);
+		expenseColumnStore.removeAfterCommit(rollupShare.get().getPersonId(), id);
 	}
 
 	/**
 	 * Retrieves all expenses for a specific person.
+	 * The person is only looked up when there are no expenses, to tell a missing person from an empty history.
 	 *
 	 * @param personId the ID of the person whose expenses are to be retrieved.
 	 *
@@ -74,14 +152,127 @@ public class ExpenseService {
 	 *
 	 * @throws NoExpensesFoundException if no expenses are found for the specified person.
 	 */
-	public List<Expense> getAll(Long personId) throws NoExpensesFoundException, NoPersonFoundException {
+	@Transactional(readOnly = true)
+	public List<ExpenseView> getAll(Long personId) throws NoExpensesFoundException, NoPersonFoundException {
 		log.info("Looking for expenses for person ID {} in the DB...", personId);
-		checkIfPersonIdExists(personId);
 		var expenses = expenseRepository.findByPersonId(personId);
+		if (expenses.isEmpty()) {
+			checkIfPersonIdExists(personId);
+		}
 		checkIfExpenseExists(expenses);
 		return expenses;
 	}
 
+	/**
+	 * Retrieves one page of expenses of a person, newest first, optionally limited to a category.
+	 * Pages are addressed by a continuation token (keyset pagination), so the cost does not grow with the history size.
+	 *
+	 * @param personId     the ID of the person whose expenses are to be retrieved.
+	 * @param category     the category of expenses, or null for all categories.
+	 * @param cursor       the continuation token returned with the previous page, or null for the first page.
+	 * @param size         the page size, or null for the default size. It is capped by the maximum page size.
+	 * @param includeTotal whether the total number of expenses should be counted as well.
+	 *
+	 * @return the page of expenses and the token of the next page, which is null on the last page.
+	 *
+	 * @throws InvalidCursorException if the continuation token is malformed.
+	 */
+	@Transactional(readOnly = true)
+	public ExpensePage getPage(final Long personId, final String category, final String cursor, final Integer size, final boolean includeTotal) throws InvalidCursorException {
+		int pageSize = Math.min(Math.max(size == null ? defaultPageSize : size, 1), maxPageSize);
+		Category expenseCategory = category == null ? null : Category.valueOf(category);
+		ExpenseCursor after = cursor == null ? null : ExpenseCursor.decode(cursor);
+		log.info("Looking for a page of {} expenses for person ID {} in the DB...", pageSize, personId);
+
+		// One extra row tells if there is a next page without counting
+		Pageable limit = PageRequest.of(0, pageSize + 1);
+		List<ExpenseView> expenses;
+		if (expenseCategory == null) {
+			expenses = after == null
+					? expenseRepository.findFirstPageByPersonId(personId, limit)
+					: expenseRepository.findPageByPersonIdAfter(personId, after.getDate(), after.getId(), limit);
+		} else {
+			expenses = after == null
+					? expenseRepository.findFirstPageByCategoryAndPersonId(expenseCategory, personId, limit)
+					: expenseRepository.findPageByCategoryAndPersonIdAfter(expenseCategory, personId, after.getDate(), after.getId(), limit);
+		}
+
+		String nextCursor = null;
+		if (expenses.size() > pageSize) {
+			expenses = expenses.subList(0, pageSize);
+			nextCursor = ExpenseCursor.of(expenses.get(pageSize - 1)).encode();
+		}
+		Long totalCount = null;
+		if (includeTotal) {
+			totalCount = expenseCategory == null
+					? expenseRepository.countByPersonId(personId)
+					: expenseRepository.countByCategoryAndPersonId(expenseCategory, personId);
+		}
+		return ExpensePage.builder()
+				.expenses(expenses)
+				.nextCursor(nextCursor)
+				.totalCount(totalCount)
+				.build();
+	}
+
+	/**
+	 * Searches the expenses of a person with any combination of filters, one page at a time.
+	 * The filters are combined into a single query. The date range and the cursor of a date order bound the
+	 * (person_id, date) index range, the categories, prices and description are checked on the rows of that range.
+	 * Price orders read the (person_id, price_cents, id) index in order, so a page stops after its rows.
+	 *
+	 * @param criteria the person, the optional filters and the sort order, newest first by default.
+	 * @param cursor   the continuation token returned with the previous page, omitted for the first page.
+	 * @param size     the page size.
+	 * @return the page of matching expenses and the token of the next page.
+	 * @throws InvalidCursorException if the continuation token is malformed or was returned by a search in another order.
+	 */
+	@Transactional(readOnly = true)
+	public ExpensePage search(final ExpenseSearchCriteria criteria, final String cursor, final Integer size) throws InvalidCursorException {
+		int pageSize = Math.min(Math.max(size == null ? defaultPageSize : size, 1), maxPageSize);
+		ExpenseSort sort = criteria.getSort() == null ? ExpenseSort.DATE_DESC : criteria.getSort();
+		ExpenseSearchCursor after = cursor == null ? null : ExpenseSearchCursor.decode(cursor);
+		if (after != null && after.getSort() != sort) {
+			log.error("Cursor of a {} search used for a {} search.", after.getSort(), sort);
+			throw new InvalidCursorException("The cursor belongs to a search sorted by " + after.getSort() + ".");
+		}
+		log.info("Searching a page of {} expenses for person ID {} in the DB...", pageSize, criteria.getPersonId());
+
+		Specification<Expense> specification = Specification.where(ExpenseSpecifications.ofPerson(criteria.getPersonId()))
+				.and(ExpenseSpecifications.dateBetween(criteria.getStartDate(), criteria.getEndDate()))
+				.and(ExpenseSpecifications.categoryIn(criteria.getCategories()))
+				.and(ExpenseSpecifications.priceBetween(criteria.getMinPrice(), criteria.getMaxPrice()))
+				.and(ExpenseSpecifications.descriptionContains(criteria.getDescription()))
+				.and(ExpenseSpecifications.after(after, sort));
+
+		// One extra row tells if there is a next page without counting
+		List<ExpenseView> expenses = expenseSearchRepository.search(specification, sort, pageSize + 1);
+		String nextCursor = null;
+		if (expenses.size() > pageSize) {
+			expenses = expenses.subList(0, pageSize);
+			nextCursor = ExpenseSearchCursor.of(expenses.get(pageSize - 1), sort).encode();
+		}
+		return ExpensePage.builder()
+				.expenses(expenses)
+				.nextCursor(nextCursor)
+				.build();
+	}
+
+	/**
+	 * Searches the descriptions of a person's expenses in the in-process text index.
+	 * Unlike a LIKE filter, the search does not scan the expenses, so it stays fast over years of entries.
+	 *
+	 * @param personId the ID of the person whose expenses are to be searched.
+	 * @param query    the search text.
+	 * @param limit    the maximum number of expense IDs.
+	 * @return the IDs of the matching expenses, most relevant first.
+	 */
+	public List<Long> searchDescriptions(final Long personId, final String query, final Integer limit) {
+		int maxResults = Math.min(Math.max(limit == null ? defaultPageSize : limit, 1), maxPageSize);
+		log.info("Searching expense descriptions of person ID {}...", personId);
+		return expenseTextIndex.search(personId, query, maxResults);
+	}
+
 	/**
 	 * Retrieves all categories of expenses.
 	 *
@@ -106,19 +297,192 @@ public class ExpenseService {
 	 *
 	 * @throws NoExpensesFoundException if no expenses are found for the current month.
 	 */
+	@Transactional(readOnly = true)
 	public double getCurrentMonthTotalExpenses(final Long personId) throws NoExpensesFoundException {
-		LocalDate startOfMonth = YearMonth.now().atDay(1);
-		LocalDate endOfMonth = YearMonth.now().atEndOfMonth();
+		YearMonth currentMonth = YearMonth.now();
 		log.info("Logged person id is: {}", personId);
-		List<Expense> expenses = expenseRepository.findAllByPersonIdAndDateBetween(personId, startOfMonth, endOfMonth);
-		checkIfExpensesExists(expenses.isEmpty(), "No expenses found.");
-		return expenses.stream()
-				.mapToDouble(Expense::getPrice)
-				.sum();
+		return getTotalExpenses(personId, currentMonth.atDay(1), currentMonth.atEndOfMonth()).getTotal();
+	}
+
+	/**
+	 * Calculates the total and the number of expenses within a date range for a given person.
+	 * Ranges of whole months are read from the monthly rollups, other ranges are summed by the DB.
+	 * The result is cached until the person's expenses change. With the column store enabled it is summed in memory instead.
+	 *
+	 * @param personId  the ID of the person.
+	 * @param startDate the first day of the range, inclusive.
+	 * @param endDate   the last day of the range, inclusive.
+	 *
+	 * @return the total price and the number of expenses.
+	 *
+	 * @throws NoExpensesFoundException if no expenses are found within the range.
+	 */
+	@Transactional(readOnly = true)
+	public ExpenseTotal getTotalExpenses(final Long personId, final LocalDate startDate, final LocalDate endDate) throws NoExpensesFoundException {
+		log.info("Summing expenses for person ID {} between {} and {}...", personId, startDate, endDate);
+		ExpenseTotal expenseTotal = expenseColumnStore.isEnabled()
+				? expenseColumnStore.total(personId, startDate, endDate)
+				: expenseSummaryCache.get(personId, "total", () -> isWholeMonths(startDate, endDate)
+						? monthlyRollupRepository.sumByPersonIdAndMonthBetween(personId, MonthlyRollup.monthOf(startDate), MonthlyRollup.monthOf(endDate))
+						: expenseRepository.sumByPersonIdAndDateBetween(personId, startDate, endDate), startDate, endDate);
+		checkIfExpensesExists(expenseTotal.getCount() == 0, "No expenses found.");
+		return expenseTotal;
+	}
+
+	/**
+	 * Calculates the total, the number and the average price of expenses per category within a date range.
+	 * All categories are aggregated by a single GROUP BY query, over the monthly rollups for ranges of whole months.
+	 * The result is cached until the person's expenses change. With the column store enabled it is aggregated in memory instead.
+	 *
+	 * @param personId  the ID of the person.
+	 * @param startDate the first day of the range, inclusive.
+	 * @param endDate   the last day of the range, inclusive.
+	 *
+	 * @return one aggregate per category that has expenses, the largest total first.
+	 *
+	 * @throws NoExpensesFoundException if no expenses are found within the range.
+	 */
+	@Transactional(readOnly = true)
+	public List<CategoryTotal> getCategoryBreakdown(final Long personId, final LocalDate startDate, final LocalDate endDate) throws NoExpensesFoundException {
+		log.info("Aggregating expenses by category for person ID {} between {} and {}...", personId, startDate, endDate);
+		List<CategoryTotal> categoryTotals = expenseColumnStore.isEnabled()
+				? expenseColumnStore.categoryBreakdown(personId, startDate, endDate)
+				: expenseSummaryCache.get(personId, "breakdown", () -> isWholeMonths(startDate, endDate)
+						? monthlyRollupRepository.sumByCategory(personId, MonthlyRollup.monthOf(startDate), MonthlyRollup.monthOf(endDate))
+						: expenseRepository.sumByCategory(personId, startDate, endDate), startDate, endDate);
+		checkIfExpensesExists(categoryTotals.isEmpty(), "No expenses found.");
+		return categoryTotals;
+	}
+
+	/**
+	 * Retrieves the most expensive expenses of a person within a date range, newest first on equal prices.
+	 * With the column store enabled they are selected in memory and carry no description, otherwise the DB sorts them.
+	 *
+	 * @param personId  the ID of the person.
+	 * @param startDate the first day of the range, inclusive.
+	 * @param endDate   the last day of the range, inclusive.
+	 * @param limit     the maximum number of expenses, or null for the default page size. It is capped by the maximum page size.
+	 *
+	 * @return the most expensive expenses, the most expensive first.
+	 *
+	 * @throws NoExpensesFoundException if no expenses are found within the range.
+	 */
+	@Transactional(readOnly = true)
+	public List<ExpenseView> getTopExpenses(final Long personId, final LocalDate startDate, final LocalDate endDate, final Integer limit) throws NoExpensesFoundException {
+		int maxResults = Math.min(Math.max(limit == null ? defaultPageSize : limit, 1), maxPageSize);
+		log.info("Looking for the {} most expensive expenses of person ID {} between {} and {}...", maxResults, personId, startDate, endDate);
+		List<ExpenseView> expenses = expenseColumnStore.isEnabled()
+				? expenseColumnStore.top(personId, startDate, endDate, maxResults)
+				: expenseRepository.findTopByPersonIdAndDateBetween(personId, startDate, endDate, PageRequest.of(0, maxResults));
+		checkIfExpenseExists(expenses);
+		return expenses;
+	}
+
+	/**
+	 * Calculates the total and the number of expenses of a person per year, read from the monthly rollups.
+	 * The rollups are cached until the person's expenses change.
+	 *
+	 * @param personId the ID of the person.
+	 *
+	 * @return one entry per year that has expenses, oldest first.
+	 *
+	 * @throws NoExpensesFoundException if the person has no expenses.
+	 */
+	@Transactional(readOnly = true)
+	public List<YearTotal> getYearTotals(final Long personId) throws NoExpensesFoundException {
+		log.info("Summing expenses per year for person ID {}...", personId);
+		List<MonthlyRollup> rollups = expenseSummaryCache.get(personId, "rollups", () -> monthlyRollupRepository.findByPersonId(personId));
+		// The rollups are ordered by month, so every year is one consecutive bucket
+		int size = rollups.size();
+		int[] buckets = new int[size];
+		long[] cents = new long[size];
+		long[] counts = new long[size];
+		List<Integer> years = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			MonthlyRollup rollup = rollups.get(i);
+			int year = rollup.getRollupMonth() / 100;
+			if (years.isEmpty() || years.get(years.size() - 1) != year) {
+				years.add(year);
+			}
+			buckets[i] = years.size() - 1;
+			cents[i] = rollup.getTotalCents();
+			counts[i] = rollup.getExpenseCount();
+		}
+		long[] yearCents = new long[years.size()];
+		long[] yearCounts = new long[years.size()];
+		Aggregations.sumByBucket(cents, buckets, 0, size, yearCents);
+		Aggregations.sumByBucket(counts, buckets, 0, size, yearCounts);
+
+		List<YearTotal> yearTotals = new ArrayList<>();
+		for (int bucket = 0; bucket < years.size(); bucket++) {
+			yearTotals.add(new YearTotal(years.get(bucket), Money.toAmount(yearCents[bucket]), yearCounts[bucket]));
+		}
+		checkIfExpensesExists(yearTotals.isEmpty(), "No expenses found.");
+		return yearTotals;
+	}
+
+	/**
+	 * Calculates the spending series of a person, bucketed by day, ISO week or month over a date range.
+	 * Buckets are summed by the DB and cached until the person's expenses change, buckets without expenses are filled with zeros here.
+	 *
+	 * @param personId    the ID of the person.
+	 * @param startDate   the first day of the range, inclusive.
+	 * @param endDate     the last day of the range, inclusive.
+	 * @param granularity the bucket size.
+	 * @param byCategory  whether every bucket should also contain the totals of all categories.
+	 *
+	 * @return one point per bucket overlapping the range, in chronological order.
+	 *
+	 * @throws MandatoryFieldsMissingException if the start date is after the end date, or the range has more buckets than allowed.
+	 */
+	public List<SeriesPoint> getSpendingSeries(final Long personId, final LocalDate startDate, final LocalDate endDate,
+											   final Granularity granularity, final boolean byCategory) throws MandatoryFieldsMissingException {
+		if (startDate.isAfter(endDate)) {
+			log.error("Start date must not be after end date.");
+			throw new MandatoryFieldsMissingException("Start date must not be after end date.");
+		}
+		if (granularity.bucketCount(startDate, endDate) > maxSeriesBuckets) {
+			log.error("The range must not span more than {} buckets.", maxSeriesBuckets);
+			throw new MandatoryFieldsMissingException("The range must not span more than " + maxSeriesBuckets + " buckets.");
+		}
+		log.info("Building {} spending series for person ID {} between {} and {}...", granularity, personId, startDate, endDate);
+		Map<LocalDate, SeriesPoint> points = new HashMap<>();
+		List<ExpenseSeriesRepository.BucketTotal> bucketTotals = expenseSummaryCache.get(personId, "series",
+				() -> expenseSeriesRepository.sumByBucket(personId, startDate, endDate, granularity, byCategory), startDate, endDate, granularity, byCategory);
+		// The categories of a bucket are added up in cents, so the bucket total is exact
+		Map<LocalDate, Long> bucketCents = new HashMap<>();
+		for (ExpenseSeriesRepository.BucketTotal bucketTotal : bucketTotals) {
+			SeriesPoint point = points.computeIfAbsent(bucketTotal.getBucketStart(), bucketStart -> emptySeriesPoint(bucketStart, byCategory));
+			long cents = bucketCents.merge(bucketTotal.getBucketStart(), bucketTotal.getTotalCents(), Long::sum);
+			point.setTotal(Money.toAmount(cents));
+			point.setCount(point.getCount() + bucketTotal.getCount());
+			if (byCategory) {
+				point.getByCategory().put(bucketTotal.getCategory(), Money.toAmount(bucketTotal.getTotalCents()));
+			}
+		}
+
+		List<SeriesPoint> series = new ArrayList<>();
+		for (LocalDate bucketStart = granularity.bucketStart(startDate); !bucketStart.isAfter(endDate); bucketStart = granularity.nextBucket(bucketStart)) {
+			SeriesPoint point = points.get(bucketStart);
+			series.add(point != null ? point : emptySeriesPoint(bucketStart, byCategory));
+		}
+		return series;
+	}
+
+	private static SeriesPoint emptySeriesPoint(final LocalDate bucketStart, final boolean byCategory) {
+		Map<Category, Double> categoryTotals = null;
+		if (byCategory) {
+			categoryTotals = new EnumMap<>(Category.class);
+			for (Category category : Category.values()) {
+				categoryTotals.put(category, 0.0);
+			}
+		}
+		return new SeriesPoint(bucketStart, 0, 0, categoryTotals);
 	}
 
 	/**
 	 * Retrieves expenses by category and person ID.
+	 * The person is only looked up when there are no expenses, to tell a missing person from an empty category.
 	 *
 	 * @param category the category of expenses.
 	 * @param personId the ID of the person.
@@ -127,13 +491,23 @@ public class ExpenseService {
 	 *
 	 * @throws NoExpensesFoundException if no expenses are found for the given category and person.
 	 */
-	public List<Expense> getExpensesByCategoryAndPersonId(final String category, final Long personId) throws NoExpensesFoundException, NoPersonFoundException {
-		checkIfPersonIdExists(personId);
-		List<Expense> expenses = expenseRepository.findByCategoryAndPersonId(Category.valueOf(category), personId);
+	@Transactional(readOnly = true)
+	public List<ExpenseView> getExpensesByCategoryAndPersonId(final String category, final Long personId) throws NoExpensesFoundException, NoPersonFoundException {
+		List<ExpenseView> expenses = expenseRepository.findByCategoryAndPersonId(Category.valueOf(category), personId);
+		if (expenses.isEmpty()) {
+			checkIfPersonIdExists(personId);
+		}
 		checkIfExpensesExists(expenses.isEmpty(), "No expenses found.");
 		return expenses;
 	}
 
+	/**
+	 * Checks if the range starts on the first day of a month and ends on the last day of a month.
+	 */
+	private static boolean isWholeMonths(final LocalDate startDate, final LocalDate endDate) {
+		return startDate.getDayOfMonth() == 1 && endDate.getDayOfMonth() == endDate.lengthOfMonth() && !startDate.isAfter(endDate);
+	}
+
 	/**
 	 * Checks if expenses exists in database
 	 * @param expenses
@@ -153,8 +527,7 @@ public class ExpenseService {
 	 * @throws NoPersonFoundException
 	 */
 	private void checkIfPersonIdExists(Long personId) throws NoPersonFoundException {
-		Optional<Person> person = personRepository.findById(personId);
-		if (person.isEmpty()) {
+		if (!personRepository.existsById(personId)) {
 			log.error("No person found in the DB with ID {}.", personId);
 			throw new NoPersonFoundException("No person found in the DB with ID " + personId);
 		}
@@ -165,7 +538,30 @@ public class ExpenseService {
 	 * @param expenses
 	 * @throws NoExpensesFoundException
 	 */
-	private static void checkIfExpenseExists(List<Expense> expenses) throws NoExpensesFoundException {
+	private static void checkIfExpenseExists(List<ExpenseView> expenses) throws NoExpensesFoundException {
 		checkIfExpensesExists(expenses.isEmpty(), "No expenses found.");
 	}
+
+	/**
+	 * Checks if an insert was rejected by an integrity constraint, and not by e.g. a description longer than its column.
+	 */
+	private static boolean violatesConstraint(final DataIntegrityViolationException exception) {
+		for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SQLException) {
+				String sqlState = ((SQLException) cause).getSQLState();
+				return sqlState != null && sqlState.startsWith("23");
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Looks the person up in a new transaction, since PostgreSQL rejects any further statement of the failed one.
+	 */
+	private boolean personExists(final Long personId) {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		transactionTemplate.setReadOnly(true);
+		return Boolean.TRUE.equals(transactionTemplate.execute(status -> personRepository.existsById(personId)));
+	}
 }
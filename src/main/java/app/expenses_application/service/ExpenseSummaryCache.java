@@ -0,0 +1,138 @@
+package app.expenses_application.service;
+
+import app.expenses_application.util.ExpenseVersionRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, expiring read-through cache of per-person expense summaries (totals, breakdowns, series).
+ * Every key carries the data version of its person and the global version. Invalidating a person bumps the version,
+ * so only that person's entries stop matching and the stale ones age out through the size bound and the TTL. The same versions back the ETags
+ * of the expense endpoints. The versions are per instance, so nothing is cached unless they are enabled.
+ */
+@Slf4j
+@Component
+public class ExpenseSummaryCache {
+
+    private final Cache<SummaryKey, Object> summaries;
+    private final ExpenseVersionRegistry expenseVersionRegistry;
+
+    /**
+     * Creates the summary cache.
+     *
+     * @param expenseVersionRegistry the data versions of the persons.
+     * @param maxSize                the maximum number of cached summaries.
+     * @param expiresAfter           how long a summary stays cached after it was loaded.
+     */
+    public ExpenseSummaryCache(final ExpenseVersionRegistry expenseVersionRegistry,
+                               @Value("${expense.summary-cache.max-size:10000}") long maxSize,
+                               @Value("${expense.summary-cache.expire-after-write:PT10M}") Duration expiresAfter) {
+        this.expenseVersionRegistry = expenseVersionRegistry;
+        this.summaries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expiresAfter)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached summary, or loads and caches it on a miss. Without versions the summary is always loaded.
+     *
+     * @param personId  the ID of the person the summary belongs to.
+     * @param query     the name of the summary query.
+     * @param loader    loads the summary from the DB.
+     * @param arguments the query arguments, such as the date range.
+     * @param <T>       the type of the summary.
+     * @return the summary.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(final Long personId, final String query, final Supplier<T> loader, final Object... arguments) {
+        if (!expenseVersionRegistry.isEnabled()) {
+            return loader.get();
+        }
+        SummaryKey key = new SummaryKey(personId, expenseVersionRegistry.globalVersion(), expenseVersionRegistry.currentVersion(personId),
+                query, Arrays.asList(arguments));
+        return (T) summaries.get(key, missingKey -> loader.get());
+    }
+
+    /**
+     * Invalidates the summaries of a person once the current transaction commits, or right away outside a transaction.
+     * Invalidating after the commit keeps a concurrent read from caching the data the transaction is replacing.
+     *
+     * @param personId the ID of the person whose expenses changed.
+     */
+    public void invalidateAfterCommit(final Long personId) {
+        if (personId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(personId);
+                }
+            });
+        } else {
+            invalidate(personId);
+        }
+    }
+
+    /**
+     * Invalidates the summaries of a person.
+     *
+     * @param personId the ID of the person.
+     */
+    public void invalidate(final Long personId) {
+        log.info("Invalidating cached expense summaries of person ID {}.", personId);
+        expenseVersionRegistry.bump(personId);
+    }
+
+    /**
+     * Invalidates the summaries of every person.
+     * Like invalidate, this only bumps the version the keys carry. Clearing the cache would not stop loads already
+     * in flight from caching the totals they computed before the invalidation.
+     */
+    public void invalidateAll() {
+        log.info("Invalidating all cached expense summaries.");
+        expenseVersionRegistry.bumpAll();
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the cache.
+     *
+     * @return the cache statistics.
+     */
+    public CacheStats stats() {
+        return summaries.stats();
+    }
+
+    /**
+     * Returns the approximate number of cached summaries.
+     *
+     * @return the number of cached summaries.
+     */
+    public long size() {
+        return summaries.estimatedSize();
+    }
+
+    @Data
+    private static class SummaryKey {
+        private final Long personId;
+        private final long globalVersion;
+        private final long version;
+        private final String query;
+        private final List<Object> arguments;
+    }
+}
@@ -0,0 +1,361 @@
+package app.expenses_application.service;
+
+import app.expenses_application.dto.ExpenseView;
+import app.expenses_application.model.Expense;
+import app.expenses_application.repository.ExpenseRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-process inverted index of expense descriptions, partitioned per person.
+ * A partition is loaded on the first search of a person, from its snapshot file when that is still current,
+ * otherwise from the DB. Added and deleted expenses are applied once their transaction commits, and changed
+ * partitions are written back to their snapshot files periodically, on eviction and on shutdown.
+ * A snapshot is only used when it indexes exactly the expense IDs the person has in the DB. IDs come from a pooled
+ * sequence and are not handed out in order, so neither the count nor the highest ID tells whether a snapshot missed a change.
+ */
+@Slf4j
+@Component
+public class ExpenseTextIndex {
+
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final double PREFIX_MATCH_WEIGHT = 0.5;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ExpenseRepository expenseRepository;
+    private final Path directory;
+    private final Cache<Long, PersonIndex> partitions;
+
+    /**
+     * Creates the index.
+     *
+     * @param expenseRepository the repository the partitions are built from.
+     * @param directory         the directory of the snapshot files.
+     * @param maxPersons        the maximum number of partitions kept in memory.
+     */
+    public ExpenseTextIndex(final ExpenseRepository expenseRepository,
+                            @Value("${expense.text-index.directory:data/text-index}") String directory,
+                            @Value("${expense.text-index.max-persons:1000}") long maxPersons) {
+        this.expenseRepository = expenseRepository;
+        this.directory = Paths.get(directory);
+        this.partitions = Caffeine.newBuilder()
+                .maximumSize(maxPersons)
+                .<Long, PersonIndex>removalListener((personId, index, cause) -> {
+                    if (cause.wasEvicted() && index != null) {
+                        writeSnapshot(personId, index);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Searches the descriptions of a person's expenses.
+     * Every query term matches the indexed terms it is a prefix of, exact matches weigh more. Expenses are ranked
+     * by their BM25 score, newer expenses first on equal scores.
+     *
+     * @param personId the ID of the person.
+     * @param query    the search text.
+     * @param limit    the maximum number of expense IDs.
+     * @return the IDs of the matching expenses, most relevant first.
+     */
+    public List<Long> search(final Long personId, final String query, final int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        return partitions.get(personId, this::load).search(terms, limit);
+    }
+
+    /**
+     * Indexes added expenses once the current transaction commits, or right away outside a transaction.
+     * Only a partition in memory is updated, the snapshot of any other partition no longer matches the DB.
+     * A partition still loading is updated once the load completes, compute blocks on the load where computeIfPresent
+     * would see no partition yet. The load may already have seen the expenses, so expenses indexed before are skipped.
+     *
+     * @param personId the ID of the person the expenses belong to.
+     * @param expenses the added expenses.
+     */
+    public void addAfterCommit(final Long personId, final Collection<Expense> expenses) {
+        if (personId == null || expenses.isEmpty()) {
+            return;
+        }
+        Map<Long, String> descriptions = new HashMap<>();
+        for (Expense expense : expenses) {
+            descriptions.put(expense.getId(), expense.getDescription());
+        }
+        afterCommit(() -> partitions.asMap().compute(personId, (id, index) -> {
+            if (index != null) {
+                descriptions.forEach((expenseId, description) -> index.add(expenseId, tokenize(description)));
+            }
+            return index;
+        }));
+    }
+
+    /**
+     * Removes a deleted expense once the current transaction commits, or right away outside a transaction.
+     * A partition still loading is updated once the load completes.
+     *
+     * @param personId  the ID of the person the expense belonged to.
+     * @param expenseId the ID of the deleted expense.
+     */
+    public void removeAfterCommit(final Long personId, final Long expenseId) {
+        afterCommit(() -> partitions.asMap().compute(personId, (id, index) -> {
+            if (index != null) {
+                index.remove(expenseId);
+            }
+            return index;
+        }));
+    }
+
+    /**
+     * Drops the partition and the snapshot of a deleted person once the current transaction commits.
+     *
+     * @param personId the ID of the person.
+     */
+    public void dropAfterCommit(final Long personId) {
+        afterCommit(() -> {
+            partitions.invalidate(personId);
+            try {
+                Files.deleteIfExists(snapshotFile(personId));
+            } catch (IOException e) {
+                log.warn("Could not delete the description index snapshot of person ID {}.", personId, e);
+            }
+        });
+    }
+
+    /**
+     * Writes the changed partitions to their snapshot files.
+     */
+    @Scheduled(fixedDelayString = "${expense.text-index.flush-delay:PT1M}")
+    public void flush() {
+        partitions.asMap().forEach(this::writeSnapshot);
+    }
+
+    /**
+     * Writes the changed partitions before the application stops.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Splits a text into lower case terms without diacritics, so "Café" and "cafe" match.
+     *
+     * @param text the text, may be null.
+     * @return the terms in the order of the text.
+     */
+    static List<String> tokenize(final String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(normalized)) {
+            if (term.length() >= MIN_TERM_LENGTH) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private void afterCommit(final Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private PersonIndex load(final Long personId) {
+        Set<Long> ids = new HashSet<>(expenseRepository.findIdsByPersonId(personId, Pageable.unpaged()));
+        PersonIndex index = readSnapshot(personId, ids);
+        if (index != null) {
+            log.info("Loaded the description index of person ID {} from its snapshot.", personId);
+            return index;
+        }
+        log.info("Building the description index of person ID {} from the DB...", personId);
+        index = new PersonIndex();
+        for (ExpenseView expense : expenseRepository.findByPersonId(personId)) {
+            index.add(expense.getId(), tokenize(expense.getDescription()));
+        }
+        return index;
+    }
+
+    private Path snapshotFile(final Long personId) {
+        return directory.resolve(personId + ".idx");
+    }
+
+    private PersonIndex readSnapshot(final Long personId, final Set<Long> ids) {
+        Path file = snapshotFile(personId);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_VERSION || in.readLong() != ids.size()) {
+                log.info("The description index snapshot of person ID {} is outdated.", personId);
+                return null;
+            }
+            PersonIndex index = new PersonIndex();
+            for (long document = 0; document < ids.size(); document++) {
+                long id = in.readLong();
+                if (!ids.contains(id)) {
+                    log.info("The description index snapshot of person ID {} is outdated.", personId);
+                    return null;
+                }
+                int length = in.readInt();
+                List<String> terms = new ArrayList<>(length);
+                for (int term = 0; term < length; term++) {
+                    terms.add(in.readUTF());
+                }
+                index.add(id, terms);
+            }
+            index.markClean();
+            return index;
+        } catch (IOException e) {
+            log.warn("Could not read the description index snapshot of person ID {}.", personId, e);
+            return null;
+        }
+    }
+
+    private void writeSnapshot(final Long personId, final PersonIndex index) {
+        try {
+            index.writeIfDirty(directory, snapshotFile(personId));
+        } catch (IOException e) {
+            log.warn("Could not write the description index snapshot of person ID {}.", personId, e);
+        }
+    }
+
+    /**
+     * Inverted index of the expense descriptions of one person.
+     */
+    private static class PersonIndex {
+
+        private final Map<Long, List<String>> documents = new HashMap<>();
+        private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        private long totalLength;
+        private boolean dirty;
+
+        synchronized void add(final long id, final List<String> terms) {
+            if (documents.containsKey(id)) {
+                return;
+            }
+            documents.put(id, terms);
+            totalLength += terms.size();
+            for (String term : terms) {
+                postings.computeIfAbsent(term, key -> new HashMap<>()).merge(id, 1, Integer::sum);
+            }
+            dirty = true;
+        }
+
+        synchronized void remove(final long id) {
+            List<String> terms = documents.remove(id);
+            if (terms == null) {
+                return;
+            }
+            totalLength -= terms.size();
+            for (String term : new HashSet<>(terms)) {
+                Map<Long, Integer> frequencies = postings.get(term);
+                frequencies.remove(id);
+                if (frequencies.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+            dirty = true;
+        }
+
+        synchronized List<Long> search(final List<String> queryTerms, final int limit) {
+            int documentCount = documents.size();
+            double averageLength = documentCount == 0 ? 0 : (double) totalLength / documentCount;
+            Map<Long, Double> scores = new HashMap<>();
+            for (String queryTerm : queryTerms) {
+                for (Map.Entry<String, Map<Long, Integer>> posting
+                        : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+                    double weight = posting.getKey().equals(queryTerm) ? 1 : PREFIX_MATCH_WEIGHT;
+                    Map<Long, Integer> frequencies = posting.getValue();
+                    double idf = Math.log(1 + (documentCount - frequencies.size() + 0.5) / (frequencies.size() + 0.5));
+                    for (Map.Entry<Long, Integer> frequency : frequencies.entrySet()) {
+                        int length = documents.get(frequency.getKey()).size();
+                        double tf = frequency.getValue();
+                        double score = weight * idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+                        scores.merge(frequency.getKey(), score, Double::sum);
+                    }
+                }
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        }
+
+        synchronized void markClean() {
+            dirty = false;
+        }
+
+        synchronized void writeIfDirty(final Path directory, final Path file) throws IOException {
+            if (!dirty) {
+                return;
+            }
+            Files.createDirectories(directory);
+            Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(documents.size());
+                for (Map.Entry<Long, List<String>> document : documents.entrySet()) {
+                    out.writeLong(document.getKey());
+                    out.writeInt(document.getValue().size());
+                    for (String term : document.getValue()) {
+                        out.writeUTF(term);
+                    }
+                }
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package app.expenses_application.service;
+
+import app.expenses_application.dto.ExpenseBatchResponse;
+import app.expenses_application.dto.ExpenseQueueStatistics;
+import app.expenses_application.dto.QueuedExpenseStatus;
+import app.expenses_application.exception.ExpenseQueueFullException;
+import app.expenses_application.exception.MandatoryFieldsMissingException;
+import app.expenses_application.exception.NoPersonFoundException;
+import app.expenses_application.exception.NoQueuedExpenseFoundException;
+import app.expenses_application.model.Expense;
+import app.expenses_application.validator.ExpenseFieldsValidator;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional write-behind queue for single expenses, for clients that add them in bursts.
+ * Expenses are validated and queued by the request thread, which returns right away with an ID to poll.
+ * One writer thread drains the queue in groups and adds every group in a single transaction, so a burst costs
+ * one commit per group instead of one per expense. A group is closed when it reaches the maximum batch size or when
+ * its first expense has waited for the maximum latency. When the queue is full new expenses are rejected, so the
+ * client backs off instead of the queue growing without bound.
+ */
+@Slf4j
+@Service
+public class ExpenseWriteQueue {
+
+    private static final long IDLE_POLL_MILLIS = 200;
+    private static final Duration STATUS_RETENTION = Duration.ofHours(1);
+    private static final long MAX_STATUSES = 1_000_000;
+
+    private final ExpenseBatchService expenseBatchService;
+    private final ExpenseFieldsValidator expenseFieldsValidator;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final Duration maxLatency;
+    private final BlockingQueue<QueuedExpense> queue;
+    private final Cache<String, QueuedExpense> writes;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong groupCommits = new AtomicLong();
+
+    private volatile boolean accepting;
+    private Thread writer;
+
+    /**
+     * Creates the queue.
+     *
+     * @param expenseBatchService    adds the expenses of a group.
+     * @param expenseFieldsValidator validates the expenses before they are queued.
+     * @param transactionManager     the transaction manager of the group transactions.
+     * @param enabled                whether single expenses are added through the queue.
+     * @param capacity               the maximum number of queued expenses.
+     * @param maxBatchSize           the maximum number of expenses committed together.
+     * @param maxLatency             how long the first expense of a group waits for more expenses.
+     */
+    public ExpenseWriteQueue(final ExpenseBatchService expenseBatchService,
+                             final ExpenseFieldsValidator expenseFieldsValidator,
+                             final PlatformTransactionManager transactionManager,
+                             @Value("${expense.write-behind.enabled:false}") boolean enabled,
+                             @Value("${expense.write-behind.queue-capacity:10000}") int capacity,
+                             @Value("${expense.write-behind.max-batch-size:200}") int maxBatchSize,
+                             @Value("${expense.write-behind.max-latency:PT0.05S}") Duration maxLatency) {
+        this.expenseBatchService = expenseBatchService;
+        this.expenseFieldsValidator = expenseFieldsValidator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatency = maxLatency;
+        this.accepting = enabled;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writes = Caffeine.newBuilder()
+                .maximumSize(MAX_STATUSES)
+                .expireAfterWrite(STATUS_RETENTION)
+                .build();
+    }
+
+    /**
+     * Starts the writer thread if the queue is enabled.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        writer = new Thread(this::runWriter, "expense-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops accepting expenses and waits until the queued ones are committed.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        accepting = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    /**
+     * Checks if single expenses are added through the queue.
+     *
+     * @return true if the queue is enabled, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Validates an expense and queues it to be added by the writer thread.
+     * A missing person is only detected by the writer and reported in the status of the write.
+     *
+     * @param personId the ID of the person the expense belongs to.
+     * @param expense  the expense to be added.
+     * @return the status of the write, including its ID to poll.
+     * @throws MandatoryFieldsMissingException if mandatory fields are missing in the expense.
+     * @throws NoPersonFoundException if no person ID is provided.
+     * @throws ExpenseQueueFullException if the queue is full or not accepting expenses.
+     */
+    public QueuedExpenseStatus enqueue(final Long personId, final Expense expense)
+            throws MandatoryFieldsMissingException, NoPersonFoundException, ExpenseQueueFullException {
+        if (expense == null) {
+            log.error("Expense is null.");
+            throw new NullPointerException("Expense is null.");
+        }
+        if (personId == null) {
+            log.error("No person found with ID: {}", personId);
+            throw new NoPersonFoundException("No person found with ID: " + personId);
+        }
+        if (!expenseFieldsValidator.validateExpenseFields(expense)) {
+            log.error("All fields must be filled and price must be more than 0.");
+            throw new MandatoryFieldsMissingException("All fields must be filled and price must be more than 0.");
+        }
+        QueuedExpense write = new QueuedExpense(UUID.randomUUID().toString(), personId, expense);
+        writes.put(write.writeId, write);
+        if (!accepting || !queue.offer(write)) {
+            writes.invalidate(write.writeId);
+            rejected.incrementAndGet();
+            log.warn("Expense queue is full, rejecting an expense of person ID {}.", personId);
+            throw new ExpenseQueueFullException("Too many expenses are waiting to be saved, please retry shortly.");
+        }
+        accepted.incrementAndGet();
+        return write.toStatus();
+    }
+
+    /**
+     * Retrieves the state of a queued expense.
+     *
+     * @param writeId the ID returned when the expense was queued.
+     * @return the status of the write.
+     * @throws NoQueuedExpenseFoundException if no write is known with the given ID.
+     */
+    public QueuedExpenseStatus getStatus(final String writeId) throws NoQueuedExpenseFoundException {
+        QueuedExpense write = writes.getIfPresent(writeId);
+        if (write == null) {
+            log.error("No queued expense found with ID: {}", writeId);
+            throw new NoQueuedExpenseFoundException("No queued expense found with ID: " + writeId);
+        }
+        return write.toStatus();
+    }
+
+    /**
+     * Returns the depth of the queue and the counters of accepted, rejected and written expenses.
+     *
+     * @return the queue statistics.
+     */
+    public ExpenseQueueStatistics statistics() {
+        return ExpenseQueueStatistics.builder()
+                .enabled(enabled)
+                .depth(queue.size())
+                .capacity(capacity)
+                .accepted(accepted.get())
+                .rejected(rejected.get())
+                .committed(committed.get())
+                .failed(failed.get())
+                .groupCommits(groupCommits.get())
+                .build();
+    }
+
+    private void runWriter() {
+        List<QueuedExpense> group = new ArrayList<>(maxBatchSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                QueuedExpense first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + maxLatency.toNanos();
+                while (group.size() < maxBatchSize) {
+                    if (queue.drainTo(group, maxBatchSize - group.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    QueuedExpense next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Expense writer interrupted with {} expenses queued.", queue.size() + group.size());
+                return;
+            } catch (RuntimeException e) {
+                log.error("Expense writer failed to commit a group of {} expenses.", group.size(), e);
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds a group in one transaction. If the transaction fails, the expenses of every person are retried in a
+     * transaction of their own, so one failing person does not fail the others.
+     */
+    private void commit(final List<QueuedExpense> group) {
+        Map<Long, List<QueuedExpense>> byPerson = new LinkedHashMap<>();
+        for (QueuedExpense write : group) {
+            byPerson.computeIfAbsent(write.personId, personId -> new ArrayList<>()).add(write);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> byPerson.forEach(this::addAll));
+            groupCommits.incrementAndGet();
+            group.forEach(this::publish);
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} expenses failed, committing them per person.", group.size(), e);
+            byPerson.forEach((personId, writes) -> {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> addAll(personId, writes));
+                    writes.forEach(this::publish);
+                } catch (RuntimeException personFailure) {
+                    log.error("Could not save {} queued expenses of person ID {}.", writes.size(), personId, personFailure);
+                    writes.forEach(write -> {
+                        write.error = "The expense could not be saved.";
+                        publish(write);
+                    });
+                }
+            });
+        }
+    }
+
+    private void addAll(final Long personId, final List<QueuedExpense> writes) {
+        List<Expense> expenses = new ArrayList<>(writes.size());
+        for (QueuedExpense write : writes) {
+            write.error = null;
+            expenses.add(write.expense);
+        }
+        try {
+            ExpenseBatchResponse response = expenseBatchService.addAll(personId, expenses);
+            for (ExpenseBatchResponse.ItemError error : response.getErrors()) {
+                writes.get(error.getIndex()).error = error.getMessage();
+            }
+        } catch (NoPersonFoundException e) {
+            writes.forEach(write -> write.error = e.getMessage());
+        }
+    }
+
+    private void publish(final QueuedExpense write) {
+        if (write.error == null) {
+            write.expenseId = write.expense.getId();
+            write.state = QueuedExpenseStatus.State.COMMITTED;
+            committed.incrementAndGet();
+        } else {
+            write.state = QueuedExpenseStatus.State.FAILED;
+            failed.incrementAndGet();
+        }
+        // Statuses are kept for an hour, the expense and its person are not needed any more
+        write.expense = null;
+    }
+
+    /**
+     * A queued expense, updated by the writer thread and read by status requests.
+     * The expense is only held until the write is published, the status keeps the ID, the state and the error.
+     */
+    private static class QueuedExpense {
+
+        private final String writeId;
+        private final Long personId;
+        private Expense expense;
+        private volatile String error;
+        private volatile Long expenseId;
+        private volatile QueuedExpenseStatus.State state = QueuedExpenseStatus.State.QUEUED;
+
+        private QueuedExpense(final String writeId, final Long personId, final Expense expense) {
+            this.writeId = writeId;
+            this.personId = personId;
+            this.expense = expense;
+        }
+
+        private QueuedExpenseStatus toStatus() {
+            QueuedExpenseStatus.State currentState = state;
+            return QueuedExpenseStatus.builder()
+                    .writeId(writeId)
+                    .state(currentState)
+                    .expenseId(currentState == QueuedExpenseStatus.State.COMMITTED ? expenseId : null)
+                    .message(currentState == QueuedExpenseStatus.State.FAILED ? error : null)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package app.expenses_application.service;
+
+import app.expenses_application.dto.StoredResponse;
+import app.expenses_application.exception.IdempotencyConflictException;
+import app.expenses_application.exception.IdempotencyKeyReusedException;
+import app.expenses_application.repository.IdempotencyKeyRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bounded, expiring store of the responses of requests sent with an Idempotency-Key.
+ * The first request of a key claims it and runs, a retry gets the stored response back and a concurrent duplicate
+ * waits for the response of the request in progress. A request that fails releases its key, so a retry runs again.
+ * A key is bound to the body of its first request, reusing it with another body is rejected instead of replayed.
+ * Keys are scoped by the caller and hashed, and are optionally also kept in the DB, so they survive restarts and are
+ * shared by every application instance. A key claimed in the DB is leased, so the key of an instance that crashed
+ * during the request can be claimed again once the lease has expired.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private static final long POLL_MILLIS = 50;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final boolean persistent;
+    private final Duration timeToLive;
+    private final Duration waitTimeout;
+    private final Duration leaseTimeout;
+    private final AsyncCache<String, StoredResponse> responses;
+
+    /**
+     * Creates the store.
+     *
+     * @param idempotencyKeyRepository the table of keys, used when the store is persistent.
+     * @param persistent               whether the keys are also kept in the DB.
+     * @param maxKeys                  the maximum number of keys kept in memory.
+     * @param timeToLive               how long the response of a key is replayed.
+     * @param waitTimeout              how long a duplicate waits for the request in progress.
+     * @param leaseTimeout             how long a key claimed in the DB is held without a stored response.
+     */
+    public IdempotencyStore(final IdempotencyKeyRepository idempotencyKeyRepository,
+                            @Value("${idempotency.persistent:false}") boolean persistent,
+                            @Value("${idempotency.max-keys:100000}") long maxKeys,
+                            @Value("${idempotency.ttl:PT24H}") Duration timeToLive,
+                            @Value("${idempotency.wait-timeout:PT10S}") Duration waitTimeout,
+                            @Value("${idempotency.lease-timeout:PT2M}") Duration leaseTimeout) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.persistent = persistent;
+        this.timeToLive = timeToLive;
+        this.waitTimeout = waitTimeout;
+        this.leaseTimeout = leaseTimeout;
+        // Futures in progress are neither weighed nor expired, and a future completed with null is removed
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Claims a key, or returns the response of a previous request with the same key.
+     *
+     * @param scope       the caller and the endpoint the key is valid for.
+     * @param key         the Idempotency-Key sent by the client.
+     * @param requestBody the body of the request.
+     * @return the claim, holding the response to replay if the key was already used.
+     * @throws IdempotencyConflictException  if a request with the same key is still in progress after the wait timeout.
+     * @throws IdempotencyKeyReusedException if the key was already used with another request body.
+     */
+    public Claim claim(final String scope, final String key, final byte[] requestBody) throws IdempotencyConflictException, IdempotencyKeyReusedException {
+        String keyHash = hash((scope + '\n' + key).getBytes(StandardCharsets.UTF_8));
+        String requestHash = hash(requestBody);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            CompletableFuture<StoredResponse> claimed = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> inProgress = responses.asMap().putIfAbsent(keyHash, claimed);
+            if (inProgress == null) {
+                Claim claim = new Claim(keyHash, requestHash, claimed);
+                if (persistent) {
+                    try {
+                        claimPersisted(claim, deadline);
+                    } catch (RuntimeException e) {
+                        // The key must not stay claimed in memory when the DB could not be reached
+                        claim.release();
+                        throw e;
+                    }
+                    if (claim.replay != null) {
+                        checkSameRequest(claim.replay, requestHash);
+                    }
+                }
+                return claim;
+            }
+            StoredResponse response = await(inProgress, deadline);
+            if (response != null) {
+                checkSameRequest(response, requestHash);
+                return new Claim(keyHash, requestHash, response);
+            }
+            // The request in progress failed and released the key
+        }
+    }
+
+    /**
+     * Deletes the expired keys from the DB.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-delay:PT1H}")
+    public void purgeExpired() {
+        if (persistent) {
+            int deleted = idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(timeToLive));
+            log.info("Purged {} expired idempotency keys.", deleted);
+        }
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the keys kept in memory.
+     *
+     * @return the cache statistics.
+     */
+    public CacheStats stats() {
+        return responses.synchronous().stats();
+    }
+
+    /**
+     * Returns the approximate number of keys kept in memory.
+     *
+     * @return the number of keys.
+     */
+    public long size() {
+        return responses.synchronous().estimatedSize();
+    }
+
+    private void claimPersisted(final Claim claim, final long deadline) throws IdempotencyConflictException {
+        Instant now = Instant.now();
+        Optional<StoredResponse> stored = idempotencyKeyRepository.findCompleted(claim.keyHash, now.minus(timeToLive));
+        // Another instance holds the key until it stores its response
+        while (stored.isEmpty() && !idempotencyKeyRepository.claim(claim.keyHash, claim.requestHash, now, now.minus(timeToLive), now.minus(leaseTimeout))) {
+            if (System.nanoTime() > deadline) {
+                claim.release();
+                throw conflict();
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                claim.release();
+                throw conflict();
+            }
+            now = Instant.now();
+            stored = idempotencyKeyRepository.findCompleted(claim.keyHash, now.minus(timeToLive));
+        }
+        if (stored.isPresent()) {
+            claim.replay = stored.get();
+            claim.future.complete(stored.get());
+        } else {
+            claim.persisted = true;
+        }
+    }
+
+    private StoredResponse await(final CompletableFuture<StoredResponse> inProgress, final long deadline) throws IdempotencyConflictException {
+        try {
+            return inProgress.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            throw conflict();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict();
+        }
+    }
+
+    private static void checkSameRequest(final StoredResponse response, final String requestHash) throws IdempotencyKeyReusedException {
+        // Keys stored before the request hash was recorded are replayed as before
+        if (response.getRequestHash() != null && !response.getRequestHash().equals(requestHash)) {
+            log.warn("An Idempotency-Key was reused with a different request body.");
+            throw new IdempotencyKeyReusedException("The Idempotency-Key was already used with a different request body.");
+        }
+    }
+
+    private static IdempotencyConflictException conflict() {
+        log.warn("A request with the same Idempotency-Key is still in progress.");
+        return new IdempotencyConflictException("A request with the same Idempotency-Key is still in progress.");
+    }
+
+    private static String hash(final byte[] input) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(input);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte value : digest) {
+                hex.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * A claimed key, or the response of the request that used the key before.
+     */
+    public class Claim {
+
+        private final String keyHash;
+        private final String requestHash;
+        private final CompletableFuture<StoredResponse> future;
+        private StoredResponse replay;
+        private boolean persisted;
+
+        private Claim(final String keyHash, final String requestHash, final CompletableFuture<StoredResponse> future) {
+            this.keyHash = keyHash;
+            this.requestHash = requestHash;
+            this.future = future;
+        }
+
+        private Claim(final String keyHash, final String requestHash, final StoredResponse replay) {
+            this.keyHash = keyHash;
+            this.requestHash = requestHash;
+            this.future = null;
+            this.replay = replay;
+        }
+
+        /**
+         * Returns the response to replay.
+         *
+         * @return the response of the previous request, or null if the key was claimed and the request should run.
+         */
+        public StoredResponse getReplay() {
+            return replay;
+        }
+
+        /**
+         * Returns the hash of the request body the key is claimed for.
+         *
+         * @return the request hash, stored with the response.
+         */
+        public String getRequestHash() {
+            return requestHash;
+        }
+
+        /**
+         * Stores the response of the request, so retries and waiting duplicates get it.
+         * The request already ran, so a failed DB write keeps the key claimed until its lease expires instead of
+         * releasing it, and the response is still replayed from memory.
+         *
+         * @param response the response of the request.
+         */
+        public void complete(final StoredResponse response) {
+            future.complete(response);
+            if (persisted) {
+                try {
+                    idempotencyKeyRepository.complete(keyHash, response);
+                } catch (RuntimeException e) {
+                    log.error("Could not store the response of an Idempotency-Key, its claim is kept until the lease expires.", e);
+                }
+            }
+        }
+
+        /**
+         * Releases the key of a failed request, so a retry runs again.
+         */
+        public void release() {
+            try {
+                if (persisted) {
+                    idempotencyKeyRepository.release(keyHash);
+                }
+            } finally {
+                // A key left in the DB is claimable again after its lease
+                future.complete(null);
+                responses.asMap().remove(keyHash, future);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package app.expenses_application.service;
+
+import app.expenses_application.model.Expense;
+import app.expenses_application.model.MonthlyRollup;
+import app.expenses_application.model.MonthlyRollupId;
+import app.expenses_application.repository.MonthlyRollupRepository;
+import app.expenses_application.repository.MonthlyRollupUpsertRepository;
+import app.expenses_application.repository.PersonRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service class for maintaining the monthly expense rollups.
+ * Rollups are updated in the transaction that adds or deletes the expenses, and can be rebuilt from raw expenses.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MonthlyRollupService {
+
+    private final MonthlyRollupRepository monthlyRollupRepository;
+    private final MonthlyRollupUpsertRepository monthlyRollupUpsertRepository;
+    private final PersonRepository personRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ExpenseSummaryCache expenseSummaryCache;
+
+    /**
+     * Adds an expense to the rollup of its person, month and category.
+     *
+     * @param expense the added expense.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyAdded(final Expense expense) {
+        if (expense.getPerson() == null) {
+            return;
+        }
+        monthlyRollupUpsertRepository.increment(expense.getPerson().getId(), MonthlyRollup.monthOf(expense.getDate()), expense.getCategory(), expense.getPriceCents(), 1);
+    }
+
+    /**
+     * Removes an expense from the rollup of its person, month and category.
+     *
+     * @param share the rollup share of the deleted expense, as read by ExpenseRepository.findRollupShareById.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyDeleted(final MonthlyRollup share) {
+        if (share.getPersonId() == null) {
+            return;
+        }
+        monthlyRollupUpsertRepository.increment(share.getPersonId(), share.getRollupMonth(), share.getCategory(), -share.getTotalCents(), -share.getExpenseCount());
+    }
+
+    /**
+     * Adds many expenses to the rollups. Expenses of the same person, month and category are merged first,
+     * so a batch costs one statement per affected rollup row.
+     *
+     * @param expenses the added expenses.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyAdded(final Collection<Expense> expenses) {
+        Map<MonthlyRollupId, MonthlyRollup> deltas = new HashMap<>();
+        for (Expense expense : expenses) {
+            if (expense.getPerson() == null) {
+                continue;
+            }
+            MonthlyRollupId id = new MonthlyRollupId(expense.getPerson().getId(), MonthlyRollup.monthOf(expense.getDate()), expense.getCategory());
+            MonthlyRollup delta = deltas.computeIfAbsent(id, key -> new MonthlyRollup(key.getPersonId(), key.getRollupMonth(), key.getCategory(), 0, 0));
+            delta.setTotalCents(delta.getTotalCents() + expense.getPriceCents());
+            delta.setExpenseCount(delta.getExpenseCount() + 1);
+        }
+        for (MonthlyRollup delta : deltas.values()) {
+            monthlyRollupUpsertRepository.increment(delta.getPersonId(), delta.getRollupMonth(), delta.getCategory(), delta.getTotalCents(), delta.getExpenseCount());
+        }
+    }
+
+    /**
+     * Recomputes all rollups of a person from the raw expenses.
+     *
+     * @param personId the ID of the person.
+     * @return the number of rollup rows written.
+     */
+    @Transactional
+    public int rebuild(final Long personId) {
+        monthlyRollupRepository.deleteByPersonId(personId);
+        int rows = monthlyRollupRepository.insertFromExpenses(personId);
+        log.info("Rebuilt {} monthly rollups for person ID {}.", rows, personId);
+        expenseSummaryCache.invalidateAfterCommit(personId);
+        return rows;
+    }
+
+    /**
+     * Recomputes the rollups of every person, each person in its own transaction.
+     * Runs on the expense.rollup.rebuild-cron schedule, which is disabled by default.
+     *
+     * @return the number of rebuilt persons.
+     */
+    @Scheduled(cron = "${expense.rollup.rebuild-cron:-}")
+    public int rebuildAll() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        List<Long> personIds = personRepository.findAllIds();
+        log.info("Rebuilding monthly rollups for {} persons...", personIds.size());
+        for (Long personId : personIds) {
+            transactionTemplate.executeWithoutResult(status -> {
+                monthlyRollupRepository.deleteByPersonId(personId);
+                monthlyRollupRepository.insertFromExpenses(personId);
+            });
+        }
+        expenseSummaryCache.invalidateAll();
+        return personIds.size();
+    }
+}
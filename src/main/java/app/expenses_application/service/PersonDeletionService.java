@@ -0,0 +1,173 @@
+package app.expenses_application.service;
+
+import app.expenses_application.dto.PersonDeletionStatus;
+import app.expenses_application.exception.NoDeletionFoundException;
+import app.expenses_application.exception.NoPersonFoundException;
+import app.expenses_application.model.MonthlyRollup;
+import app.expenses_application.repository.ExpenseRepository;
+import app.expenses_application.repository.PersonRepository;
+import app.expenses_application.util.TokenRevocationRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service class for deleting persons with a large expense history in the background.
+ * Expenses are deleted in fixed-size chunks, each in its own short transaction, so no request waits for the whole
+ * history and no transaction holds locks on all of it. Every chunk also takes its expenses out of the monthly rollups
+ * and invalidates the cached summaries and in-memory indexes of the person, so a deletion that stops part-way leaves
+ * them consistent with the remaining expenses. The person itself is deleted last by PersonService.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PersonDeletionService {
+
+    private final PersonService personService;
+    private final PersonRepository personRepository;
+    private final ExpenseRepository expenseRepository;
+    private final MonthlyRollupService monthlyRollupService;
+    private final ExpenseSummaryCache expenseSummaryCache;
+    private final ExpenseTextIndex expenseTextIndex;
+    private final ExpenseColumnStore expenseColumnStore;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${person.delete.chunk-size:5000}")
+    private int chunkSize;
+
+    private ExecutorService executor;
+    private Cache<String, DeletionProgress> deletions;
+
+    /**
+     * Starts the deletion worker thread and the store of deletion progress.
+     */
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor();
+        deletions = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofDays(1))
+                .build();
+    }
+
+    /**
+     * Stops the deletion worker thread.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts deleting a person and their expenses in the background.
+     * The tokens of the person are revoked right away, so no expenses are added while the deletion runs.
+     *
+     * @param personId the ID of the person to be deleted.
+     * @return the initial status of the deletion, including its ID.
+     * @throws NoPersonFoundException if no person is found with the given ID.
+     */
+    public PersonDeletionStatus start(final Long personId) throws NoPersonFoundException {
+        var email = personRepository.findEmailById(personId);
+        if (email.isEmpty()) {
+            log.error("No person found with {} id.", personId);
+            throw new NoPersonFoundException("No person found with " + personId + " id.");
+        }
+        tokenRevocationRegistry.revoke(email.get());
+
+        String deletionId = UUID.randomUUID().toString();
+        DeletionProgress progress = new DeletionProgress(personId);
+        deletions.put(deletionId, progress);
+        log.info("Starting deletion {} of person ID {}...", deletionId, personId);
+        executor.execute(() -> runDeletion(deletionId, personId, progress));
+        return progress.toStatus(deletionId);
+    }
+
+    /**
+     * Retrieves the progress of a deletion.
+     *
+     * @param deletionId the ID of the deletion.
+     * @return the status of the deletion.
+     * @throws NoDeletionFoundException if no deletion is known with the given ID.
+     */
+    public PersonDeletionStatus getStatus(final String deletionId) throws NoDeletionFoundException {
+        DeletionProgress progress = deletions.getIfPresent(deletionId);
+        if (progress == null) {
+            log.error("No deletion found with ID: {}", deletionId);
+            throw new NoDeletionFoundException("No deletion found with ID: " + deletionId);
+        }
+        return progress.toStatus(deletionId);
+    }
+
+    private void runDeletion(final String deletionId, final Long personId, final DeletionProgress progress) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            Integer deleted;
+            do {
+                deleted = transactionTemplate.execute(status -> deleteChunk(personId));
+                progress.expensesDeleted.addAndGet(deleted);
+            } while (deleted > 0);
+            // Rollups, expenses added meanwhile and the person itself
+            personService.deleteById(personId);
+            progress.state = PersonDeletionStatus.State.COMPLETED;
+            log.info("Deletion {} completed: {} expenses deleted.", deletionId, progress.expensesDeleted.get());
+        } catch (Exception e) {
+            log.error("Deletion {} failed after {} expenses.", deletionId, progress.expensesDeleted.get(), e);
+            progress.message = "Deletion stopped after " + progress.expensesDeleted.get() + " expenses: " + e.getMessage();
+            progress.state = PersonDeletionStatus.State.FAILED;
+        }
+    }
+
+    private int deleteChunk(final Long personId) {
+        List<Long> ids = expenseRepository.findIdsByPersonId(personId, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<MonthlyRollup> shares = expenseRepository.sumRollupSharesByIdIn(ids);
+        int deleted = expenseRepository.deleteByIdIn(ids);
+        shares.forEach(monthlyRollupService::applyDeleted);
+        expenseSummaryCache.invalidateAfterCommit(personId);
+        expenseTextIndex.dropAfterCommit(personId);
+        expenseColumnStore.dropAfterCommit(personId);
+        return deleted;
+    }
+
+    /**
+     * Progress of a running deletion, updated by the worker thread and read by status requests.
+     */
+    private static class DeletionProgress {
+
+        private final Long personId;
+        private final AtomicLong expensesDeleted = new AtomicLong();
+        private volatile PersonDeletionStatus.State state = PersonDeletionStatus.State.RUNNING;
+        private volatile String message;
+
+        private DeletionProgress(final Long personId) {
+            this.personId = personId;
+        }
+
+        private PersonDeletionStatus toStatus(final String deletionId) {
+            return PersonDeletionStatus.builder()
+                    .deletionId(deletionId)
+                    .personId(personId)
+                    .state(state)
+                    .expensesDeleted(expensesDeleted.get())
+                    .message(message)
+                    .build();
+        }
+    }
+}
@@ -1,17 +1,32 @@
 package app.expenses_application.service;
 
+import app.expenses_application.dto.PersonListItem;
+import app.expenses_application.dto.PersonPage;
 import app.expenses_application.dto.PersonResponse;
+import app.expenses_application.exception.InvalidSortException;
 import app.expenses_application.exception.MandatoryFieldsMissingException;
 import app.expenses_application.exception.NoPersonFoundException;
 import app.expenses_application.model.Person;
+import app.expenses_application.repository.ExpenseRepository;
+import app.expenses_application.repository.MonthlyRollupRepository;
 import app.expenses_application.repository.PersonRepository;
+import app.expenses_application.util.CachingUserDetailsService;
+import app.expenses_application.util.TokenRevocationRegistry;
 import app.expenses_application.validator.PersonFieldsValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service class for managing persons.
@@ -21,10 +36,28 @@ import java.util.List;
 @Slf4j
 public class PersonService {
 
+    private static final Set<String> SORT_COLUMNS = Set.of("id", "email", "name", "role");
+    private static final Map<String, String> SORT_STATISTICS = Map.of(
+            "expenseCount", "COALESCE(SUM(r.expenseCount), 0)",
+            "expenseTotal", "COALESCE(SUM(r.totalCents), 0)");
+
     private final PersonRepository personRepository;
     private final PersonFieldsValidator personFieldsValidator;
     private final PersonMappingService personMappingService;
     private final PasswordEncoder passwordEncoder;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final CachingUserDetailsService userDetailsService;
+    private final MonthlyRollupRepository monthlyRollupRepository;
+    private final ExpenseRepository expenseRepository;
+    private final ExpenseSummaryCache expenseSummaryCache;
+    private final ExpenseTextIndex expenseTextIndex;
+    private final ExpenseColumnStore expenseColumnStore;
+
+    @Value("${person.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${person.page.max-size:500}")
+    private int maxPageSize;
 
     /**
      * Adds a new person.
@@ -46,23 +79,35 @@ public class PersonService {
         person.setPassword(hashedPassword);
 
         personRepository.save(person);
+        userDetailsService.evict(person.getEmail());
     }
 
     /**
-     * Deletes a person by their ID.
+     * Deletes a person by their ID, together with their expenses, monthly rollups and cached expense summaries.
+     * Every table is cleared by one set-based statement, neither the person nor the expenses are loaded.
+     * Use PersonDeletionService for accounts too large to delete in one transaction.
      *
      * @param id the ID of the person to be deleted.
      * @throws NoPersonFoundException if no person is found with the given ID.
      */
+    @Transactional
     public void deleteById(final long id) throws NoPersonFoundException {
         log.info("Looking for person with {} id in the DB...", id);
-        var person = personRepository.findById(id);
+        var email = personRepository.findEmailById(id);
 
-        if (person.isEmpty()) {
+        if (email.isEmpty()) {
             log.error("No person found with {} id.", id);
             throw new NoPersonFoundException("No person found with " + id + " id.");
         }
-        personRepository.deleteById(id);
+        monthlyRollupRepository.deleteByPersonId(id);
+        int expenses = expenseRepository.deleteByPersonId(id);
+        personRepository.deletePersonById(id);
+        log.info("Deleted person with {} id and {} expenses.", id, expenses);
+        tokenRevocationRegistry.revokeAfterCommit(email.get());
+        userDetailsService.evict(email.get());
+        expenseSummaryCache.invalidateAfterCommit(id);
+        expenseTextIndex.dropAfterCommit(id);
+        expenseColumnStore.dropAfterCommit(id);
     }
 
     /**
@@ -82,4 +127,52 @@ public class PersonService {
 
         return personMappingService.mapToPersonResponse(personList);
     }
+
+    /**
+     * Retrieves one page of persons, without the passwords and expense lists.
+     * With expense statistics, the number and total of the expenses of every person are computed in the same query.
+     *
+     * @param page                the page number, starting at 0.
+     * @param size                the page size.
+     * @param sort                the field to sort by: id, email, name or role, and expenseCount or expenseTotal with statistics.
+     * @param descending          whether the sort order is descending.
+     * @param includeExpenseStats whether the expense count and total should be returned as well.
+     * @return the page of persons and the total number of persons.
+     * @throws InvalidSortException if the persons cannot be sorted by the given field.
+     */
+    @Transactional(readOnly = true)
+    public PersonPage getPage(final Integer page, final Integer size, final String sort, final boolean descending,
+                              final boolean includeExpenseStats) throws InvalidSortException {
+        int pageSize = Math.min(Math.max(size == null ? defaultPageSize : size, 1), maxPageSize);
+        int pageNumber = Math.max(page == null ? 0 : page, 0);
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        String sortField = sort == null ? "id" : sort;
+
+        Sort order;
+        if (SORT_COLUMNS.contains(sortField)) {
+            order = Sort.by(direction, sortField);
+        } else if (includeExpenseStats && SORT_STATISTICS.containsKey(sortField)) {
+            order = JpaSort.unsafe(direction, SORT_STATISTICS.get(sortField));
+        } else {
+            log.error("Persons cannot be sorted by {}.", sortField);
+            throw new InvalidSortException("Persons cannot be sorted by " + sortField + ".");
+        }
+        // The id breaks ties, so rows do not move between pages
+        if (!"id".equals(sortField)) {
+            order = order.and(Sort.by(Sort.Direction.ASC, "id"));
+        }
+
+        log.info("Looking for page {} of {} persons in the DB...", pageNumber, pageSize);
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, order);
+        Page<PersonListItem> persons = includeExpenseStats
+                ? personRepository.findListItemsWithExpenseStats(pageRequest)
+                : personRepository.findListItems(pageRequest);
+        return PersonPage.builder()
+                .persons(persons.getContent())
+                .page(pageNumber)
+                .size(pageSize)
+                .totalCount(persons.getTotalElements())
+                .totalPages(persons.getTotalPages())
+                .build();
+    }
 }
@@ -0,0 +1,157 @@
+package app.expenses_application.util;
+
+/**
+ * Aggregation kernels over primitive columns, e.g. prices in cents and days or months as int keys.
+ * The loops read the arrays front to back and neither box nor allocate, so the JIT can unroll and vectorize them.
+ * Every kernel works on the index range [from, to) of its columns.
+ */
+public final class Aggregations {
+
+    private Aggregations() {
+    }
+
+    /**
+     * Sums a column.
+     *
+     * @param values the column.
+     * @param from   the first index, inclusive.
+     * @param to     the last index, exclusive.
+     * @return the sum, 0 for an empty range.
+     */
+    public static long sum(final long[] values, final int from, final int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the smallest value of a column.
+     *
+     * @param values the column.
+     * @param from   the first index, inclusive.
+     * @param to     the last index, exclusive.
+     * @return the smallest value, Long.MAX_VALUE for an empty range.
+     */
+    public static long min(final long[] values, final int from, final int to) {
+        long min = Long.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    /**
+     * Returns the largest value of a column.
+     *
+     * @param values the column.
+     * @param from   the first index, inclusive.
+     * @param to     the last index, exclusive.
+     * @return the largest value, Long.MIN_VALUE for an empty range.
+     */
+    public static long max(final long[] values, final int from, final int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Counts the rows whose key lies within a range, e.g. the expenses of a date range.
+     *
+     * @param keys the key column.
+     * @param from the first index, inclusive.
+     * @param to   the last index, exclusive.
+     * @param low  the smallest key, inclusive.
+     * @param high the largest key, inclusive.
+     * @return the number of rows.
+     */
+    public static int countBetween(final int[] keys, final int from, final int to, final int low, final int high) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int key = keys[i];
+            count += key >= low && key <= high ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Sums the values of the rows whose key lies within a range, e.g. the prices of a date range.
+     *
+     * @param values the value column.
+     * @param keys   the key column, as long as the value column.
+     * @param from   the first index, inclusive.
+     * @param to     the last index, exclusive.
+     * @param low    the smallest key, inclusive.
+     * @param high   the largest key, inclusive.
+     * @return the sum, 0 if no key lies within the range.
+     */
+    public static long sumBetween(final long[] values, final int[] keys, final int from, final int to, final int low, final int high) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            int key = keys[i];
+            sum += key >= low && key <= high ? values[i] : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * Adds every value to the total of its bucket, e.g. the prices to the totals of their months or categories.
+     *
+     * @param values  the value column.
+     * @param buckets the bucket column, as long as the value column, holding indexes into totals.
+     * @param from    the first index, inclusive.
+     * @param to      the last index, exclusive.
+     * @param totals  the totals per bucket, added to.
+     */
+    public static void sumByBucket(final long[] values, final int[] buckets, final int from, final int to, final long[] totals) {
+        for (int i = from; i < to; i++) {
+            totals[buckets[i]] += values[i];
+        }
+    }
+
+    /**
+     * Counts the rows of every bucket.
+     *
+     * @param buckets the bucket column, holding indexes into counts.
+     * @param from    the first index, inclusive.
+     * @param to      the last index, exclusive.
+     * @param counts  the counts per bucket, added to.
+     */
+    public static void countByBucket(final int[] buckets, final int from, final int to, final long[] counts) {
+        for (int i = from; i < to; i++) {
+            counts[buckets[i]]++;
+        }
+    }
+
+    /**
+     * Adds every value to the total of its bucket, for small bucket columns such as category ordinals.
+     *
+     * @param values  the value column.
+     * @param buckets the bucket column, as long as the value column, holding indexes into totals.
+     * @param from    the first index, inclusive.
+     * @param to      the last index, exclusive.
+     * @param totals  the totals per bucket, added to.
+     */
+    public static void sumByBucket(final long[] values, final byte[] buckets, final int from, final int to, final long[] totals) {
+        for (int i = from; i < to; i++) {
+            totals[buckets[i]] += values[i];
+        }
+    }
+
+    /**
+     * Counts the rows of every bucket, for small bucket columns such as category ordinals.
+     *
+     * @param buckets the bucket column, holding indexes into counts.
+     * @param from    the first index, inclusive.
+     * @param to      the last index, exclusive.
+     * @param counts  the counts per bucket, added to.
+     */
+    public static void countByBucket(final byte[] buckets, final int from, final int to, final long[] counts) {
+        for (int i = from; i < to; i++) {
+            counts[buckets[i]]++;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package app.expenses_application.util;
 
 import app.expenses_application.repository.PersonRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -14,6 +15,8 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
+
 /**
  * Configuration class for application-related beans.
  */
@@ -23,15 +26,21 @@ public class ApplicationConfig {
 
     private final PersonRepository personRepository;
 
+    @Value("${security.principal-cache.max-size:10000}")
+    private long principalCacheMaxSize;
+
+    @Value("${security.principal-cache.expire-after-write:PT5M}")
+    private Duration principalCacheExpireAfterWrite;
+
     /**
      * Creates a UserDetailsService bean.
+     * Principals are cached, the DB is only queried on a cache miss.
      *
      * @return a UserDetailsService instance.
      */
     @Bean
-    public UserDetailsService userDetailsService() {
-        return username -> (UserDetails) personRepository.findByEmail(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+    public CachingUserDetailsService userDetailsService() {
+        return new CachingUserDetailsService(databaseUserDetailsService(), principalCacheMaxSize, principalCacheExpireAfterWrite);
     }
 
     /**
@@ -42,7 +51,7 @@ public class ApplicationConfig {
     @Bean
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
-        authProvider.setUserDetailsService(userDetailsService());
+        authProvider.setUserDetailsService(databaseUserDetailsService());
         authProvider.setPasswordEncoder(passwordEncoder());
         return authProvider;
     }
@@ -68,4 +77,14 @@ public class ApplicationConfig {
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
+
+    /**
+     * Loads persons straight from the DB. Login always checks the password against the current person.
+     *
+     * @return a UserDetailsService instance.
+     */
+    private UserDetailsService databaseUserDetailsService() {
+        return username -> (UserDetails) personRepository.findByEmail(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+    }
 }
@@ -0,0 +1,87 @@
+package app.expenses_application.util;
+
+import app.expenses_application.model.Person;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+
+/**
+ * UserDetailsService decorator that keeps a bounded, expiring cache of person principals.
+ * An immutable PersonPrincipal snapshot is cached instead of the managed Person entity.
+ */
+@Slf4j
+public class CachingUserDetailsService implements UserDetailsService {
+
+    private final UserDetailsService delegate;
+    private final Cache<String, UserDetails> principals;
+
+    /**
+     * Creates the caching decorator.
+     *
+     * @param delegate     the UserDetailsService loading persons from the DB.
+     * @param maxSize      the maximum number of cached principals.
+     * @param expiresAfter how long a principal stays cached after it was loaded.
+     */
+    public CachingUserDetailsService(UserDetailsService delegate, long maxSize, Duration expiresAfter) {
+        this.delegate = delegate;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expiresAfter)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached principal, or loads it from the delegate on a miss.
+     *
+     * @param username the email of the person.
+     * @return the person principal.
+     * @throws UsernameNotFoundException if no person is found with the given email.
+     */
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return principals.get(username, email -> snapshot(delegate.loadUserByUsername(email)));
+    }
+
+    /**
+     * Removes the cached principal of the person, so the next request loads it again.
+     *
+     * @param username the email of the person.
+     */
+    public void evict(String username) {
+        log.info("Evicting cached principal of {}.", username);
+        principals.invalidate(username);
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the cache.
+     *
+     * @return the cache statistics.
+     */
+    public CacheStats stats() {
+        return principals.stats();
+    }
+
+    /**
+     * Returns the approximate number of cached principals.
+     *
+     * @return the number of cached principals.
+     */
+    public long size() {
+        return principals.estimatedSize();
+    }
+
+    private static UserDetails snapshot(UserDetails userDetails) {
+        if (userDetails instanceof Person) {
+            Person person = (Person) userDetails;
+            return new PersonPrincipal(person.getId(), person.getEmail(), person.getRole());
+        }
+        return userDetails;
+    }
+}
@@ -0,0 +1,101 @@
+package app.expenses_application.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a version number of the expense data of every person, used in cache keys and ETags.
+ * The version of a person is bumped when the person's expenses change, the global version when the data of every
+ * person may have changed, e.g. after the rollups were rebuilt. Versions live in memory of the running instance only,
+ * so ETags also carry a random ID of the instance and are never reused after a restart.
+ * A write on one instance does not change the versions of another, so the versions are only used when enabled for a
+ * single-instance deployment. Otherwise summaries are not cached and no ETags are sent.
+ */
+
+@Component
+public class ExpenseVersionRegistry {
+
+    private final boolean enabled;
+    private final String instanceId = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    /**
+     * Creates the registry.
+     *
+     * @param enabled whether the versions back the summary cache and the ETags, only safe with a single instance.
+     */
+    public ExpenseVersionRegistry(@Value("${expense.local-versions.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns whether the versions back the summary cache and the ETags.
+     *
+     * @return true on a single-instance deployment that enabled them, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the current version of the expenses of the person.
+     *
+     * @param personId the ID of the person.
+     * @return the current version, 0 if the expenses were never changed.
+     */
+    public long currentVersion(Long personId) {
+        return versions.getOrDefault(personId, 0L);
+    }
+
+    /**
+     * Returns the version of the expenses of every person, bumped when all of them may have changed.
+     *
+     * @return the current global version.
+     */
+    public long globalVersion() {
+        return globalVersion.get();
+    }
+
+    /**
+     * Marks the expenses of the person as changed.
+     *
+     * @param personId the ID of the person.
+     */
+    public void bump(Long personId) {
+        versions.merge(personId, 1L, Long::sum);
+    }
+
+    /**
+     * Marks the expenses of every person as changed.
+     */
+    public void bumpAll() {
+        globalVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns a strong ETag of a representation of the person's expenses.
+     *
+     * @param personId   the ID of the person.
+     * @param qualifiers anything else the representation depends on, such as the current month.
+     * @return the quoted ETag, or null if the versions are disabled.
+     */
+    public String etag(Long personId, Object... qualifiers) {
+        if (!enabled) {
+            return null;
+        }
+        StringBuilder etag = new StringBuilder("\"").append(instanceId)
+                .append('-').append(globalVersion())
+                .append('-').append(personId)
+                .append('-').append(currentVersion(personId));
+        for (Object qualifier : qualifiers) {
+            etag.append('-').append(qualifier);
+        }
+        return etag.append('"').toString();
+    }
+}
@@ -0,0 +1,173 @@
+package app.expenses_application.util;
+
+import app.expenses_application.dto.StoredResponse;
+import app.expenses_application.exception.IdempotencyConflictException;
+import app.expenses_application.exception.IdempotencyKeyReusedException;
+import app.expenses_application.service.IdempotencyStore;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Filter class making expense creation safe to retry.
+ * A request to add expenses sent with an Idempotency-Key header runs once. Its successful response is stored and
+ * replayed to every retry with the same key, without running the request again. Keys are scoped by the authenticated
+ * user and the endpoint, and bound to the request body. A request whose exception was handled is not stored, even when
+ * the handler answers 200, so it can be retried.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Set<String> IDEMPOTENT_PATHS = Set.of("/api/expense/add", "/api/expense/addBatch");
+
+    private final IdempotencyStore idempotencyStore;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod())
+                || !IDEMPOTENT_PATHS.contains(request.getServletPath())
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    /**
+     * Runs the request once per Idempotency-Key and replays its stored response to retries.
+     *
+     * @param request     the HTTP request.
+     * @param response    the HTTP response.
+     * @param filterChain the filter chain.
+     * @throws ServletException if a servlet exception occurs.
+     * @throws IOException      if an I/O exception occurs.
+     */
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST, "Idempotency-Key must have 1 to " + MAX_KEY_LENGTH + " characters.");
+            return;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String scope = (authentication == null ? "" : authentication.getName()) + " " + request.getServletPath();
+
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        IdempotencyStore.Claim claim;
+        try {
+            claim = idempotencyStore.claim(scope, key, body);
+        } catch (IdempotencyConflictException e) {
+            writeError(response, HttpStatus.CONFLICT, e.getMessage());
+            return;
+        } catch (IdempotencyKeyReusedException e) {
+            writeError(response, HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+            return;
+        }
+        StoredResponse replay = claim.getReplay();
+        if (replay != null) {
+            response.setStatus(replay.getStatus());
+            response.setContentType(replay.getContentType());
+            response.setHeader(REPLAYED_HEADER, "true");
+            response.getOutputStream().write(replay.getBody());
+            return;
+        }
+
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            filterChain.doFilter(new CachedBodyRequest(request, body), cachingResponse);
+            // The ControllerAdvice answers some failures with 200, a handled exception is left as a request attribute
+            if (HttpStatus.valueOf(cachingResponse.getStatus()).is2xxSuccessful() && request.getAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE) == null) {
+                claim.complete(new StoredResponse(cachingResponse.getStatus(), cachingResponse.getContentType(),
+                        cachingResponse.getContentAsByteArray(), claim.getRequestHash()));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                claim.release();
+            }
+            cachingResponse.copyBodyToResponse();
+        }
+    }
+
+    private static void writeError(final HttpServletResponse response, final HttpStatus status, final String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+
+    /**
+     * Request whose body was already read, so it is hashed before the request runs and then read again by the handler.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(final HttpServletRequest request, final byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(final ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(final byte[] buffer, final int offset, final int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(getCharacterEncoding());
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
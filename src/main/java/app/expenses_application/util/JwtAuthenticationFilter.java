@@ -45,10 +45,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
         jwt = authHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwt); // Extract the userEmail from JWT token
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+        final VerifiedToken verifiedToken = jwtService.verify(jwt); // Parsed once, or taken from the cache
+        userEmail = verifiedToken.getSubject(); // Extract the userEmail from JWT token
+        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null && !jwtService.isTokenRevoked(verifiedToken)) {
+            UserDetails userDetails = jwtService.extractPrincipal(verifiedToken); // Built from claims when enabled
+            if (userDetails == null) {
+                userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+            }
+            if (jwtService.isTokenValid(verifiedToken, userDetails)) {
                 // Update spring security context
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
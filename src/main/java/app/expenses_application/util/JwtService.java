@@ -1,28 +1,92 @@
 package app.expenses_application.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import app.expenses_application.model.Person;
+import app.expenses_application.model.Role;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
 import java.security.Key;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
  * Service class for JWT token generation and validation.
+ * The signing key and the parser are built once, verified tokens are cached until they expire.
  */
 @Service
+@RequiredArgsConstructor
 public class JwtService {
 
+    private static final String ID_CLAIM = "id";
+    private static final String ROLE_CLAIM = "role";
+
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+
     @Value("${jwt.secret-key}")
     private String SECRET_KEY;
 
+    @Value("${jwt.expiration:PT100H}")
+    private Duration expiration;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${jwt.stateless-principal.enabled:false}")
+    private boolean statelessPrincipal;
+
+    private Key signInKey;
+    private JwtParser jwtParser;
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    /**
+     * Decodes the secret key and builds the parser and the verified token cache.
+     */
+    @PostConstruct
+    public void init() {
+        signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new TokenExpiry())
+                .build();
+    }
+
+    /**
+     * Parses and verifies the JWT token, or returns the cached result of a previous verification.
+     *
+     * @param token the JWT token.
+     * @return the verified token.
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, badly signed or expired.
+     */
+    public VerifiedToken verify(String token) {
+        VerifiedToken verifiedToken = verifiedTokens.getIfPresent(token);
+        if (verifiedToken != null) {
+            return verifiedToken;
+        }
+        verifiedToken = new VerifiedToken(token, extractAllClaims(token));
+        verifiedTokens.put(token, verifiedToken);
+        return verifiedToken;
+    }
+
     /**
      * Extracts the username from the JWT token.
      *
@@ -42,7 +106,8 @@ public class JwtService {
      * @return the resolved claims.
      */
     public <T> T extractClaims(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        // A copy, the cached token is shared across requests
+        final Claims claims = Jwts.claims(verify(token).getClaims());
         return claimsResolver.apply(claims);
     }
 
@@ -54,23 +119,66 @@ public class JwtService {
      * @return the generated JWT token.
      */
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
-        return Jwts.builder()
-                .setClaims(extraClaims)
-                .setSubject(userDetails.getUsername())
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 600 * 600))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
-                .compact();
+        return issueToken(extraClaims, userDetails).getToken();
     }
 
     /**
      * Generates a JWT token using only user details.
+     * The token carries the id and role when the stateless principal is enabled.
      *
      * @param userDetails the user details.
      * @return the generated JWT token.
      */
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        return issueToken(userDetails).getToken();
+    }
+
+    /**
+     * Generates a JWT token together with the claims it was signed with, so the caller reads them without parsing it.
+     * The token carries the id and role when the stateless principal is enabled.
+     *
+     * @param userDetails the user details.
+     * @return the generated token and its claims.
+     */
+    public VerifiedToken issueToken(UserDetails userDetails) {
+        Map<String, Object> claims = new HashMap<>();
+        if (statelessPrincipal && userDetails instanceof Person) {
+            Person person = (Person) userDetails;
+            claims.put(ID_CLAIM, person.getId());
+            claims.put(ROLE_CLAIM, person.getRole().name());
+        } else if (statelessPrincipal && userDetails instanceof PersonPrincipal) {
+            PersonPrincipal principal = (PersonPrincipal) userDetails;
+            claims.put(ID_CLAIM, principal.getId());
+            claims.put(ROLE_CLAIM, principal.getRole().name());
+        }
+        return issueToken(claims, userDetails);
+    }
+
+    /**
+     * Builds the principal straight from the token claims, so no database lookup is needed.
+     *
+     * @param verifiedToken the verified token.
+     * @return the principal, or null if the stateless principal is disabled or the token has no id and role claims.
+     */
+    public UserDetails extractPrincipal(VerifiedToken verifiedToken) {
+        Number id = verifiedToken.getClaim(ID_CLAIM, Number.class);
+        String role = verifiedToken.getClaim(ROLE_CLAIM, String.class);
+        if (!statelessPrincipal || id == null || role == null) {
+            return null;
+        }
+        return new PersonPrincipal(id.longValue(), verifiedToken.getSubject(), Role.valueOf(role));
+    }
+
+    /**
+     * Checks if the token was issued before the person was deleted.
+     *
+     * @param verifiedToken the verified token.
+     * @return true if the token was issued before the last revocation of the person, false otherwise.
+     */
+    public boolean isTokenRevoked(VerifiedToken verifiedToken) {
+        Instant revokedAt = tokenRevocationRegistry.revokedAt(verifiedToken.getSubject());
+        Date issuedAt = verifiedToken.getIssuedAt();
+        return revokedAt != null && (issuedAt == null || issuedAt.toInstant().isBefore(revokedAt));
     }
 
     /**
@@ -81,28 +189,62 @@ public class JwtService {
      * @return true if the token is valid, false otherwise.
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(verify(token), userDetails);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    /**
+     * Checks if an already verified token is valid for the given user.
+     *
+     * @param verifiedToken the verified token.
+     * @param userDetails   the user details.
+     * @return true if the token is valid, false otherwise.
+     */
+    public boolean isTokenValid(VerifiedToken verifiedToken, UserDetails userDetails) {
+        return verifiedToken.getSubject().equals(userDetails.getUsername()) && !verifiedToken.isExpired();
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaims(token, Claims::getExpiration);
+    private VerifiedToken issueToken(Map<String, Object> extraClaims, UserDetails userDetails) {
+        // JWT dates have second precision, truncate so the claims match the ones a parse of the token returns
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        Claims claims = Jwts.claims(extraClaims)
+                .setSubject(userDetails.getUsername())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expiration.toMillis()));
+        String token = Jwts.builder()
+                .setClaims(claims)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
+                .compact();
+        return new VerifiedToken(token, claims);
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
+        return jwtParser
                 .parseClaimsJws(token)
                 .getBody();
     }
 
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * Expires a cached token at the same moment the token itself expires.
+     */
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String token, VerifiedToken verifiedToken, long currentTime) {
+            if (verifiedToken.getExpiration() == null) {
+                return 0;
+            }
+            long millisLeft = verifiedToken.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(millisLeft, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, VerifiedToken verifiedToken, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, verifiedToken, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, VerifiedToken verifiedToken, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,58 @@
+package app.expenses_application.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between money amounts and whole cents.
+ * Prices and totals are stored and summed as long cents, so sums are exact. Amounts only exist at the API boundary.
+ */
+public final class Money {
+
+    private static final int SCALE = 2;
+    private static final double CENTS_PER_UNIT = 100.0;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount to cents, rounding half up to the nearest cent.
+     * The amount is read from its shortest decimal representation, so 1.005 becomes 101 cents, not 100.
+     *
+     * @param amount the amount.
+     * @return the amount in cents.
+     * @throws ArithmeticException if the amount does not fit into a long number of cents.
+     */
+    public static long toCents(final double amount) {
+        return BigDecimal.valueOf(amount).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts an amount to cents like toCents, or to 0 cents if it cannot be converted.
+     * NaN, infinite amounts and amounts beyond the range of long cents are not prices. Mapping them to 0, which is
+     * never a valid price, lets validation reject them like any other missing price.
+     *
+     * @param amount the amount.
+     * @return the amount in cents, or 0 if the amount cannot be converted.
+     */
+    public static long toCentsOrZero(final double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            return 0;
+        }
+        try {
+            return toCents(amount);
+        } catch (ArithmeticException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Converts cents to an amount.
+     *
+     * @param cents the amount in cents.
+     * @return the amount.
+     */
+    public static double toAmount(final long cents) {
+        return cents / CENTS_PER_UNIT;
+    }
+}
@@ -33,6 +33,7 @@ public class SecurityConfig {
                 .antMatchers("/api/auth/**").permitAll()
                 .antMatchers("/api/expense/**").hasAnyAuthority("USER", "ADMIN")
                 .antMatchers("/api/person/**").hasAnyAuthority("ADMIN")
+                .antMatchers("/api/admin/**").hasAnyAuthority("ADMIN")
                 .anyRequest().authenticated()
                 .and()
                 .sessionManagement()
@@ -0,0 +1,78 @@
+package app.expenses_application.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Keeps the time the tokens of a person were last revoked, per person email.
+ * The time is recorded when a person is deleted, so tokens issued before the deletion stop working. A revocation is
+ * kept as long as a token issued before it can be valid, i.e. for the token lifetime.
+ * Revocations live in memory of the running instance only. Losing them, e.g. on a restart, only lets tokens issued
+ * before a revocation work again, it never rejects a valid token.
+ */
+
+@Component
+public class TokenRevocationRegistry {
+
+    private final Cache<String, Instant> revocations;
+
+    /**
+     * Creates the registry.
+     *
+     * @param tokenLifetime how long an issued token is valid.
+     */
+    public TokenRevocationRegistry(@Value("${jwt.expiration:PT100H}") Duration tokenLifetime) {
+        // The revocation time is rounded up by a second, so is the time it is kept
+        this.revocations = Caffeine.newBuilder()
+                .expireAfterWrite(tokenLifetime.plusSeconds(1))
+                .build();
+    }
+
+    /**
+     * Returns the time the tokens of the person were last revoked.
+     *
+     * @param email the email of the person.
+     * @return the time of the revocation, or null if no token of the person issued before it can still be valid.
+     */
+    public Instant revokedAt(String email) {
+        return revocations.getIfPresent(email);
+    }
+
+    /**
+     * Revokes all tokens issued to the person so far, once the current transaction commits, or right away outside a
+     * transaction. A rolled back deletion leaves the tokens of the person valid.
+     *
+     * @param email the email of the person.
+     */
+    public void revokeAfterCommit(String email) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    revoke(email);
+                }
+            });
+        } else {
+            revoke(email);
+        }
+    }
+
+    /**
+     * Revokes all tokens issued to the person so far.
+     * Tokens carry their issue time in whole seconds, so the revocation is rounded up to the next second and also covers
+     * the tokens issued earlier in the same second.
+     *
+     * @param email the email of the person.
+     */
+    public void revoke(String email) {
+        revocations.put(email, Instant.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1));
+    }
+}
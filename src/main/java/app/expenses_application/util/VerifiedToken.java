@@ -0,0 +1,87 @@
+package app.expenses_application.util;
+
+import io.jsonwebtoken.Claims;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable result of a single JWT parse and signature check.
+ * The token is parsed once and the claims are copied out of the parsed jjwt claims, so an instance can be shared
+ * across requests through the verified-token cache.
+ */
+
+@Getter
+public class VerifiedToken {
+
+    private final String token;
+    private final String subject;
+    @Getter(AccessLevel.NONE)
+    private final Instant issuedAt;
+    @Getter(AccessLevel.NONE)
+    private final Instant expiration;
+    private final Map<String, Object> claims;
+
+    /**
+     * Creates a verified token from the claims it was signed with or parsed into.
+     *
+     * @param token  the compact JWT.
+     * @param claims the claims of the token, copied and not kept.
+     */
+    public VerifiedToken(final String token, final Claims claims) {
+        this.token = token;
+        this.subject = claims.getSubject();
+        this.issuedAt = toInstant(claims.getIssuedAt());
+        this.expiration = toInstant(claims.getExpiration());
+        this.claims = Collections.unmodifiableMap(new LinkedHashMap<>(claims));
+    }
+
+    /**
+     * Returns a claim of the token.
+     *
+     * @param name the name of the claim.
+     * @param type the expected type of the claim.
+     * @param <T>  the type of the claim.
+     * @return the claim, or null if the token does not carry it.
+     * @throws ClassCastException if the claim is not of the expected type.
+     */
+    public <T> T getClaim(final String name, final Class<T> type) {
+        return type.cast(claims.get(name));
+    }
+
+    /**
+     * Returns the issue date of the token.
+     *
+     * @return the issue date, or null if the token has none.
+     */
+    public Date getIssuedAt() {
+        return issuedAt == null ? null : Date.from(issuedAt);
+    }
+
+    /**
+     * Returns the expiration date of the token.
+     *
+     * @return the expiration date.
+     */
+    public Date getExpiration() {
+        return expiration == null ? null : Date.from(expiration);
+    }
+
+    /**
+     * Checks if the token is expired at the moment of the call.
+     *
+     * @return true if the token is expired, false otherwise.
+     */
+    public boolean isExpired() {
+        return expiration.isBefore(Instant.now());
+    }
+
+    private static Instant toInstant(final Date date) {
+        return date == null ? null : date.toInstant();
+    }
+}
@@ -11,11 +11,13 @@ public class ExpenseFieldsValidator {
 
 	/**
 	 * Validates the fields of an expense.
+	 * The price is checked in whole cents, as it is stored, so amounts rounding to 0 cents and amounts that could not be
+	 * converted are rejected.
 	 *
 	 * @param expense the expense to validate.
 	 * @return true if all required fields are present and valid, false otherwise.
 	 */
 	public boolean validateExpenseFields(Expense expense) {
-		return expense.getCategory() != null && !(expense.getPrice() <= 0) && expense.getDate() != null;
+		return expense.getCategory() != null && expense.getPriceCents() > 0 && expense.getDate() != null;
 	}
 }
@@ -0,0 +1,19 @@
+-- Embedded database used by the integration tests, mirrors the MySQL and PostgreSQL migrations
+CREATE TABLE person (
+    id       BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    email    VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    name     VARCHAR(255) NOT NULL,
+    role     VARCHAR(255) NOT NULL,
+    enabled  BOOLEAN      NOT NULL
+);
+
+CREATE TABLE expense (
+    id          BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    category    VARCHAR(255) NOT NULL,
+    price       DOUBLE       NOT NULL,
+    date        DATE         NOT NULL,
+    description VARCHAR(255),
+    person_id   BIGINT,
+    CONSTRAINT fk_expense_person FOREIGN KEY (person_id) REFERENCES person (id)
+);
@@ -0,0 +1 @@
+CREATE SEQUENCE expense_seq START WITH 1 INCREMENT BY 50;
@@ -0,0 +1,8 @@
+CREATE TABLE monthly_rollup (
+    person_id     BIGINT       NOT NULL,
+    rollup_month  INT          NOT NULL,
+    category      VARCHAR(255) NOT NULL,
+    total         DOUBLE       NOT NULL,
+    expense_count BIGINT       NOT NULL,
+    PRIMARY KEY (person_id, rollup_month, category)
+);
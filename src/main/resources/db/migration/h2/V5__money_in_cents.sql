@@ -0,0 +1,16 @@
+-- Prices in whole cents, so sums are exact. Going through DECIMAL rounds 1.005 to 101 cents, not 100
+ALTER TABLE expense ADD COLUMN price_cents BIGINT;
+UPDATE expense SET price_cents = ROUND(CAST(price AS DECIMAL(19, 4)) * 100);
+ALTER TABLE expense ALTER COLUMN price_cents SET NOT NULL;
+ALTER TABLE expense DROP COLUMN price;
+
+-- Rollup totals are recomputed from the cents, the old double totals may have drifted
+DELETE FROM monthly_rollup;
+ALTER TABLE monthly_rollup DROP COLUMN total;
+ALTER TABLE monthly_rollup ADD COLUMN total_cents BIGINT NOT NULL;
+
+INSERT INTO monthly_rollup (person_id, rollup_month, category, total_cents, expense_count)
+SELECT person_id, EXTRACT(YEAR FROM date) * 100 + EXTRACT(MONTH FROM date), category, SUM(price_cents), COUNT(*)
+FROM expense
+WHERE person_id IS NOT NULL
+GROUP BY person_id, EXTRACT(YEAR FROM date) * 100 + EXTRACT(MONTH FROM date), category;
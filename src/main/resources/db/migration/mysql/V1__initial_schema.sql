@@ -0,0 +1,21 @@
+-- Schema as it existed before migrations were versioned. Existing databases are baselined at this version.
+CREATE TABLE IF NOT EXISTS person (
+    id       BIGINT       NOT NULL AUTO_INCREMENT,
+    email    VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    name     VARCHAR(255) NOT NULL,
+    role     VARCHAR(255) NOT NULL,
+    enabled  BIT          NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS expense (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    category    VARCHAR(255) NOT NULL,
+    price       DOUBLE       NOT NULL,
+    date        DATE         NOT NULL,
+    description VARCHAR(255),
+    person_id   BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_expense_person FOREIGN KEY (person_id) REFERENCES person (id)
+) ENGINE = InnoDB;
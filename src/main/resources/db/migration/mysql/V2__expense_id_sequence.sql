@@ -0,0 +1,7 @@
+-- Pooled id generator of Expense (allocation size 50). MySQL has no sequences, Hibernate uses a one-row table.
+CREATE TABLE expense_seq (
+    next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO expense_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM expense;
@@ -0,0 +1,14 @@
+CREATE TABLE monthly_rollup (
+    person_id     BIGINT       NOT NULL,
+    rollup_month  INT          NOT NULL,
+    category      VARCHAR(255) NOT NULL,
+    total         DOUBLE       NOT NULL,
+    expense_count BIGINT       NOT NULL,
+    PRIMARY KEY (person_id, rollup_month, category)
+) ENGINE = InnoDB;
+
+INSERT INTO monthly_rollup (person_id, rollup_month, category, total, expense_count)
+SELECT person_id, EXTRACT(YEAR FROM date) * 100 + EXTRACT(MONTH FROM date), category, SUM(price), COUNT(*)
+FROM expense
+WHERE person_id IS NOT NULL
+GROUP BY person_id, EXTRACT(YEAR FROM date) * 100 + EXTRACT(MONTH FROM date), category;
@@ -0,0 +1,6 @@
+-- Date range, keyset pagination and aggregates of one person
+CREATE INDEX idx_expense_person_date ON expense (person_id, date, id);
+-- Category listings of one person
+CREATE INDEX idx_expense_person_category ON expense (person_id, category, date);
+-- Login and principal lookups
+CREATE UNIQUE INDEX uk_person_email ON person (email);
@@ -0,0 +1,2 @@
+-- Hash of the request body a key was used with, a reused key with another body is rejected
+ALTER TABLE idempotency_key ADD COLUMN request_hash CHAR(64);
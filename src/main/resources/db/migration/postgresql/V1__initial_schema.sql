@@ -0,0 +1,18 @@
+-- Schema as it existed before migrations were versioned. Existing databases are baselined at this version.
+CREATE TABLE IF NOT EXISTS person (
+    id       BIGSERIAL    NOT NULL PRIMARY KEY,
+    email    VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    name     VARCHAR(255) NOT NULL,
+    role     VARCHAR(255) NOT NULL,
+    enabled  BOOLEAN      NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS expense (
+    id          BIGSERIAL        NOT NULL PRIMARY KEY,
+    category    VARCHAR(255)     NOT NULL,
+    price       DOUBLE PRECISION NOT NULL,
+    date        DATE             NOT NULL,
+    description VARCHAR(255),
+    person_id   BIGINT CONSTRAINT fk_expense_person REFERENCES person (id)
+);
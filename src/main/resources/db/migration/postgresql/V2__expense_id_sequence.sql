@@ -0,0 +1,4 @@
+-- Pooled id generator of Expense (allocation size 50), starting above the existing ids
+CREATE SEQUENCE expense_seq INCREMENT BY 50;
+
+SELECT setval('expense_seq', (SELECT COALESCE(MAX(id), 0) + 51 FROM expense), false);
@@ -0,0 +1,12 @@
+-- Responses of requests sent with an Idempotency-Key, a row without status is a request in progress
+CREATE TABLE idempotency_key (
+    key_hash     CHAR(64)     NOT NULL,
+    status       INTEGER,
+    content_type VARCHAR(255),
+    body         TEXT,
+    created_at   TIMESTAMP(3) NOT NULL,
+    PRIMARY KEY (key_hash)
+);
+
+-- Purge of expired keys
+CREATE INDEX idx_idempotency_key_created ON idempotency_key (created_at);
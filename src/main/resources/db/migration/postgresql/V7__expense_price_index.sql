@@ -0,0 +1,2 @@
+-- Price ordered search and its keyset pagination of one person
+CREATE INDEX idx_expense_person_price ON expense (person_id, price_cents, id);
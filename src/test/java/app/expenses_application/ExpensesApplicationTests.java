@@ -1,34 +1,122 @@
 package app.expenses_application;
 
 import app.expenses_application.dto.LoginRequest;
+import app.expenses_application.dto.PersonDeletionStatus;
+import app.expenses_application.dto.CategoryTotal;
+import app.expenses_application.dto.DateRange;
+import app.expenses_application.dto.ExpenseBatchResponse;
+import app.expenses_application.dto.ExpenseCursor;
+import app.expenses_application.dto.ExpensePage;
+import app.expenses_application.dto.ExpenseSearchCriteria;
+import app.expenses_application.dto.ExpenseSearchCursor;
+import app.expenses_application.dto.ExpenseTotal;
+import app.expenses_application.dto.ExpenseView;
+import app.expenses_application.dto.SeriesPoint;
+import app.expenses_application.exception.InvalidCursorException;
 import app.expenses_application.dto.LoginResponse;
 import app.expenses_application.exception.MandatoryFieldsMissingException;
 import app.expenses_application.exception.NoExpensesFoundException;
 import app.expenses_application.exception.NoPersonFoundException;
 import app.expenses_application.model.Category;
 import app.expenses_application.model.Expense;
+import app.expenses_application.model.ExpenseSort;
+import app.expenses_application.model.Granularity;
+import app.expenses_application.model.MonthlyRollup;
 import app.expenses_application.model.Person;
 import app.expenses_application.model.Role;
+import app.expenses_application.repository.DatabaseVendorResolver;
 import app.expenses_application.repository.ExpenseRepository;
+import app.expenses_application.repository.ExpenseSeriesRepository;
+import app.expenses_application.repository.MonthlyRollupRepository;
 import app.expenses_application.repository.PersonRepository;
 import app.expenses_application.service.AuthenticationService;
 import app.expenses_application.service.DataMappingService;
+import app.expenses_application.service.ExpenseColumnStore;
+import app.expenses_application.service.IdempotencyStore;
+import app.expenses_application.service.ExpenseBatchService;
+import app.expenses_application.service.ExpenseExportService;
 import app.expenses_application.service.ExpenseService;
+import app.expenses_application.service.ExpenseSummaryCache;
+import app.expenses_application.service.ExpenseTextIndex;
+import app.expenses_application.service.MonthlyRollupService;
+import app.expenses_application.service.PersonDeletionService;
+import app.expenses_application.service.PersonService;
+import app.expenses_application.util.CachingUserDetailsService;
+import app.expenses_application.util.Aggregations;
+import app.expenses_application.util.CsvReader;
+import app.expenses_application.util.ExpenseVersionRegistry;
+import app.expenses_application.util.IdempotencyFilter;
 import app.expenses_application.util.JwtService;
+import app.expenses_application.util.Money;
+import app.expenses_application.util.PersonPrincipal;
+import app.expenses_application.util.TokenRevocationRegistry;
+import app.expenses_application.util.VerifiedToken;
 import app.expenses_application.validator.ExpenseFieldsValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import org.hibernate.dialect.MariaDB103Dialect;
+import org.hibernate.dialect.PostgreSQL10Dialect;
+import org.hibernate.engine.jdbc.spi.JdbcServices;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.DispatcherServlet;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
@@ -45,6 +133,27 @@ class ExpensesApplicationTests {
 	@Mock
 	private PersonRepository personRepository;
 
+	@Mock
+	private ExpenseSeriesRepository expenseSeriesRepository;
+
+	@Mock
+	private MonthlyRollupRepository monthlyRollupRepository;
+
+	@Mock
+	private MonthlyRollupService monthlyRollupService;
+
+	@Spy
+	private ExpenseSummaryCache expenseSummaryCache = new ExpenseSummaryCache(new ExpenseVersionRegistry(true), 100, Duration.ofMinutes(5));
+
+	@Mock
+	private ExpenseTextIndex expenseTextIndex;
+
+	@Mock
+	private ExpenseColumnStore expenseColumnStore;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
 	@InjectMocks
 	private ExpenseService expenseService;
 
@@ -60,6 +169,12 @@ class ExpensesApplicationTests {
 	@Mock
 	private AuthenticationManager authenticationManager;
 
+	@InjectMocks
+	private ExpenseBatchService expenseBatchService;
+
+	@Mock
+	private EntityManager entityManager;
+
 //	@Test
 //	void testIfExceptionThrownWhenNoExpenses() {
 //		Mockito.when(expenseRepository.findAll()).thenReturn(Collections.emptyList());
@@ -92,14 +207,14 @@ class ExpensesApplicationTests {
 	}
 
 	@Test
-	void testAddSuccess() throws MandatoryFieldsMissingException {
+	void testAddSuccess() throws MandatoryFieldsMissingException, NoPersonFoundException {
 		Expense expense = new Expense();
 
 		doReturn(true).when(expenseFieldsValidator).validateExpenseFields(any(Expense.class));
 
 		expenseService.add(expense);
 
-		Mockito.verify(expenseRepository).save(expense);
+		Mockito.verify(expenseRepository).saveAndFlush(expense);
 	}
 
 //	@Test
@@ -132,7 +247,179 @@ class ExpensesApplicationTests {
 //	}
 
 	@Test
-	void testAddExpenseWhenSuccess() throws MandatoryFieldsMissingException {
+	void testGetCurrentMonthTotalExpensesIsReadFromRollup() throws NoExpensesFoundException {
+		// Given
+		long personId = 1L;
+		Mockito.when(monthlyRollupRepository.sumByPersonIdAndMonthBetween(Mockito.eq(personId), Mockito.anyInt(), Mockito.anyInt()))
+				.thenReturn(new ExpenseTotal(125.5, 3L));
+
+		// When
+		double total = expenseService.getCurrentMonthTotalExpenses(personId);
+
+		// Then
+		assertEquals(125.5, total);
+		Mockito.verify(monthlyRollupRepository).sumByPersonIdAndMonthBetween(Mockito.eq(personId), Mockito.anyInt(), Mockito.anyInt());
+	}
+
+	@Test
+	void testGetTotalExpensesThrowsWhenNoExpensesInRange() {
+		// Given
+		long personId = 1L;
+		LocalDate startDate = LocalDate.of(2023, 1, 5);
+		LocalDate endDate = LocalDate.of(2023, 1, 20);
+		Mockito.when(expenseRepository.sumByPersonIdAndDateBetween(personId, startDate, endDate)).thenReturn(new ExpenseTotal(0.0, 0L));
+
+		// When/Then
+		assertThrows(NoExpensesFoundException.class, () -> expenseService.getTotalExpenses(personId, startDate, endDate));
+	}
+
+	@Test
+	void testGetPageReturnsNextCursorWithoutCounting() throws InvalidCursorException {
+		// Given
+		long personId = 1L;
+		ReflectionTestUtils.setField(expenseService, "defaultPageSize", 2);
+		ReflectionTestUtils.setField(expenseService, "maxPageSize", 10);
+		ExpenseView newest = new ExpenseView(3L, Category.FOOD, 10.0, LocalDate.of(2024, 3, 1), null);
+		ExpenseView middle = new ExpenseView(2L, Category.FOOD, 10.0, LocalDate.of(2024, 2, 1), null);
+		ExpenseView oldest = new ExpenseView(1L, Category.FOOD, 10.0, LocalDate.of(2024, 1, 1), null);
+		Mockito.when(expenseRepository.findFirstPageByPersonId(personId, PageRequest.of(0, 3))).thenReturn(List.of(newest, middle, oldest));
+
+		// When
+		ExpensePage page = expenseService.getPage(personId, null, null, null, false);
+
+		// Then
+		assertEquals(List.of(newest, middle), page.getExpenses());
+		assertEquals(new ExpenseCursor(LocalDate.of(2024, 2, 1), 2L), ExpenseCursor.decode(page.getNextCursor()));
+		assertNull(page.getTotalCount());
+		Mockito.verify(expenseRepository, Mockito.never()).countByPersonId(personId);
+	}
+
+	@Test
+	void testGetPageThrowsOnMalformedCursor() {
+		assertThrows(InvalidCursorException.class, () -> expenseService.getPage(1L, null, "not-a-cursor", 10, false));
+	}
+
+	@Test
+	void testSearchRejectsCursorOfAnotherSortOrder() {
+		// Given
+		ExpenseView last = new ExpenseView(7L, Category.FOOD, 12.5, LocalDate.of(2024, 2, 1), "Bread");
+		String priceCursor = ExpenseSearchCursor.of(last, ExpenseSort.PRICE_DESC).encode();
+		ExpenseSearchCriteria byDate = ExpenseSearchCriteria.builder().personId(1L).sort(ExpenseSort.DATE_DESC).build();
+
+		// When/Then
+		assertThrows(InvalidCursorException.class, () -> expenseService.search(byDate, priceCursor, 10));
+	}
+
+	@Test
+	void testGetCategoryBreakdownUsesSingleAggregateQuery() throws NoExpensesFoundException {
+		// Given
+		long personId = 1L;
+		LocalDate startDate = LocalDate.of(2024, 1, 1);
+		LocalDate endDate = LocalDate.of(2024, 1, 31);
+		List<CategoryTotal> categoryTotals = List.of(new CategoryTotal(Category.FOOD, 30.0, 2L, 15.0), new CategoryTotal(Category.PETS, 10.0, 1L, 10.0));
+		Mockito.when(monthlyRollupRepository.sumByCategory(personId, 202401, 202401)).thenReturn(categoryTotals);
+
+		// When
+		List<CategoryTotal> result = expenseService.getCategoryBreakdown(personId, startDate, endDate);
+
+		// Then
+		assertEquals(categoryTotals, result);
+		Mockito.verifyNoInteractions(personRepository, expenseRepository);
+	}
+
+	@Test
+	void testAddUpdatesMonthlyRollup() throws MandatoryFieldsMissingException, NoPersonFoundException {
+		// Given
+		Expense expense = new Expense(null, Category.FOOD, 12.0, LocalDate.of(2024, 1, 5), "Bread", new Person());
+		Mockito.when(expenseFieldsValidator.validateExpenseFields(expense)).thenReturn(true);
+
+		// When
+		expenseService.add(expense);
+
+		// Then
+		Mockito.verify(monthlyRollupService).applyAdded(expense);
+	}
+
+	@Test
+	void testCategoryBreakdownIsCachedUntilPersonAddsExpense() throws NoExpensesFoundException, MandatoryFieldsMissingException, NoPersonFoundException {
+		// Given
+		Person person = Person.builder().id(1L).build();
+		LocalDate startDate = LocalDate.of(2024, 1, 1);
+		LocalDate endDate = LocalDate.of(2024, 1, 31);
+		List<CategoryTotal> categoryTotals = List.of(new CategoryTotal(Category.FOOD, 30.0, 2L, 15.0));
+		Mockito.when(monthlyRollupRepository.sumByCategory(1L, 202401, 202401)).thenReturn(categoryTotals);
+		Mockito.when(monthlyRollupRepository.sumByCategory(2L, 202401, 202401)).thenReturn(categoryTotals);
+		Expense expense = new Expense(null, Category.FOOD, 12.0, LocalDate.of(2024, 1, 5), "Bread", person);
+		Mockito.when(expenseFieldsValidator.validateExpenseFields(expense)).thenReturn(true);
+
+		// When
+		expenseService.getCategoryBreakdown(1L, startDate, endDate);
+		expenseService.getCategoryBreakdown(1L, startDate, endDate);
+		expenseService.getCategoryBreakdown(2L, startDate, endDate);
+		expenseService.add(expense);
+		expenseService.getCategoryBreakdown(1L, startDate, endDate);
+		expenseService.getCategoryBreakdown(2L, startDate, endDate);
+
+		// Then
+		Mockito.verify(monthlyRollupRepository, Mockito.times(2)).sumByCategory(1L, 202401, 202401);
+		Mockito.verify(monthlyRollupRepository, Mockito.times(1)).sumByCategory(2L, 202401, 202401);
+		assertEquals(2, expenseSummaryCache.stats().hitCount());
+		assertEquals(3, expenseSummaryCache.stats().missCount());
+	}
+
+	@Test
+	void testGetSpendingSeriesFillsEmptyBuckets() throws MandatoryFieldsMissingException {
+		// Given
+		long personId = 1L;
+		LocalDate startDate = LocalDate.of(2024, 1, 10);
+		LocalDate endDate = LocalDate.of(2024, 4, 5);
+		Mockito.when(expenseSeriesRepository.sumByBucket(personId, startDate, endDate, Granularity.MONTH, false))
+				.thenReturn(List.of(new ExpenseSeriesRepository.BucketTotal(LocalDate.of(2024, 2, 1), null, 4200L, 3L)));
+		ReflectionTestUtils.setField(expenseService, "maxSeriesBuckets", 4);
+
+		// When
+		List<SeriesPoint> series = expenseService.getSpendingSeries(personId, startDate, endDate, Granularity.MONTH, false);
+
+		// Then
+		assertEquals(4, series.size());
+		assertEquals(LocalDate.of(2024, 1, 1), series.get(0).getBucketStart());
+		assertEquals(0.0, series.get(0).getTotal());
+		assertEquals(42.0, series.get(1).getTotal());
+		assertEquals(3L, series.get(1).getCount());
+		assertEquals(LocalDate.of(2024, 4, 1), series.get(3).getBucketStart());
+	}
+
+	@Test
+	void testDateRangeRequiresBothBounds() throws MandatoryFieldsMissingException {
+		assertThrows(MandatoryFieldsMissingException.class, () -> DateRange.of(null, null, LocalDate.now(), null));
+		assertThrows(MandatoryFieldsMissingException.class, () -> DateRange.of(2024, null, null, null));
+		assertEquals(new DateRange(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)), DateRange.of(2024, 2, null, null));
+	}
+
+	@Test
+	void testDateRangeRejectsInvalidMonth() {
+		assertThrows(MandatoryFieldsMissingException.class, () -> DateRange.of(2024, 13, null, null));
+		assertThrows(MandatoryFieldsMissingException.class, () -> DateRange.of(2024, 0, null, null));
+		assertThrows(MandatoryFieldsMissingException.class, () -> DateRange.of(Integer.MAX_VALUE, 1, null, null));
+	}
+
+	@Test
+	void testGetSpendingSeriesRejectsTooManyBuckets() {
+		// Given
+		ReflectionTestUtils.setField(expenseService, "maxSeriesBuckets", 1000);
+		LocalDate startDate = LocalDate.of(1, 1, 1);
+		LocalDate endDate = LocalDate.of(9999, 12, 31);
+
+		// When/Then: the range is rejected before anything is read or filled
+		assertThrows(MandatoryFieldsMissingException.class,
+				() -> expenseService.getSpendingSeries(1L, startDate, endDate, Granularity.DAY, true));
+		assertEquals(1000, Granularity.DAY.bucketCount(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 1).plusDays(999)));
+		assertEquals(2, Granularity.WEEK.bucketCount(LocalDate.of(2024, 1, 7), LocalDate.of(2024, 1, 8)));
+		Mockito.verifyNoInteractions(expenseSeriesRepository);
+	}
+
+	@Test
+	void testAddExpenseWhenSuccess() throws MandatoryFieldsMissingException, NoPersonFoundException {
 		// Given
 		Expense expense = new Expense();
 		expense.setCategory(Category.FOOD);
@@ -147,22 +434,36 @@ class ExpensesApplicationTests {
 		expenseService.add(expense);
 
 		// Then
-		Mockito.verify(expenseRepository).save(expense);
+		Mockito.verify(expenseRepository).saveAndFlush(expense);
 	}
 
 	@Test
 	void testDeleteExpenseWhenSuccess() throws NoExpensesFoundException {
 		// Given
 		long id = 1L;
-		Expense expense = new Expense();
-		expense.setId(id);
-		Mockito.when(expenseRepository.findById(id)).thenReturn(Optional.of(expense));
+		MonthlyRollup rollupShare = new MonthlyRollup(2L, 202401, Category.FOOD, 1200L, 1L);
+		Mockito.when(expenseRepository.findRollupShareById(id)).thenReturn(Optional.of(rollupShare));
+		Mockito.when(expenseRepository.deleteExpenseById(id)).thenReturn(1);
 
 		// When
 		expenseService.deleteById(id);
 
 		// Then
-		Mockito.verify(expenseRepository).deleteById(id);
+		Mockito.verify(expenseRepository).deleteExpenseById(id);
+		Mockito.verify(monthlyRollupService).applyDeleted(rollupShare);
+		Mockito.verify(expenseRepository, Mockito.never()).findById(id);
+	}
+
+	@Test
+	void testDeleteThrowsWhenExpenseIsDeletedConcurrently() {
+		// Given
+		long id = 1L;
+		Mockito.when(expenseRepository.findRollupShareById(id)).thenReturn(Optional.of(new MonthlyRollup(2L, 202401, Category.FOOD, 1200L, 1L)));
+		Mockito.when(expenseRepository.deleteExpenseById(id)).thenReturn(0);
+
+		// When/Then
+		assertThrows(NoExpensesFoundException.class, () -> expenseService.deleteById(id));
+		Mockito.verifyNoInteractions(monthlyRollupService);
 	}
 
 	@Test
@@ -231,26 +532,305 @@ class ExpensesApplicationTests {
 		person.setId(personId);
 		Expense expense = new Expense();
 
-		Mockito.when(personRepository.findById(personId)).thenReturn(Optional.of(person));
+		Mockito.when(personRepository.getById(personId)).thenReturn(person);
 
 		// When
 		dataMappingService.setPersonIdToExpense(expense, personId);
 
 		// Then
 		assertEquals(person, expense.getPerson());
+		Mockito.verify(personRepository, Mockito.never()).findById(personId);
 	}
 
 	@Test
-	void testSetPersonIdToExpenseWhenNoPersonFound() {
+	void testSetPersonIdToExpenseWhenNoPersonIdProvided() {
 		// Given
-		Long personId = 1L;
 		Expense expense = new Expense();
 
-		Mockito.when(personRepository.findById(personId)).thenReturn(Optional.empty());
-
 		// When/Then
 		assertThrows(NoPersonFoundException.class,
-				() -> dataMappingService.setPersonIdToExpense(expense, personId));
+				() -> dataMappingService.setPersonIdToExpense(expense, null));
+	}
+
+	@Test
+	void testAddThrowsNoPersonFoundExceptionWhenForeignKeyRejectsInsert() {
+		// Given: a database adopted at the baseline, with the foreign key name generated by Hibernate
+		Expense expense = new Expense(null, Category.FOOD, 12.0, LocalDate.of(2024, 1, 5), "Bread", Person.builder().id(1L).build());
+		Mockito.when(expenseFieldsValidator.validateExpenseFields(expense)).thenReturn(true);
+		Mockito.when(expenseRepository.saveAndFlush(expense)).thenThrow(new DataIntegrityViolationException("could not execute statement",
+				new SQLException("Cannot add or update a child row: a foreign key constraint fails (`expenses`.`expense`, "
+						+ "CONSTRAINT `FKhx4ny1ulb5lsm6in6jhlqvqy3` FOREIGN KEY (`person_id`) REFERENCES `person` (`id`))", "23000", 1452)));
+		Mockito.when(personRepository.existsById(1L)).thenReturn(false);
+
+		// When/Then
+		NoPersonFoundException exception = assertThrows(NoPersonFoundException.class, () -> expenseService.add(expense));
+		assertEquals("No person found with ID: 1", exception.getMessage());
+		Mockito.verifyNoInteractions(monthlyRollupService);
+	}
+
+	@Test
+	void testAddRethrowsConstraintViolationsOfAnExistingPerson() {
+		// Given
+		Expense expense = new Expense(null, Category.FOOD, 12.0, LocalDate.of(2024, 1, 5), "Bread", Person.builder().id(1L).build());
+		Mockito.when(expenseFieldsValidator.validateExpenseFields(expense)).thenReturn(true);
+		Mockito.when(expenseRepository.saveAndFlush(expense)).thenThrow(new DataIntegrityViolationException("could not execute statement",
+				new SQLException("duplicate key value violates unique constraint \"expense_pkey\"", "23505")));
+		Mockito.when(personRepository.existsById(1L)).thenReturn(true);
+
+		// When/Then
+		assertThrows(DataIntegrityViolationException.class, () -> expenseService.add(expense));
+		Mockito.verifyNoInteractions(monthlyRollupService);
+	}
+
+	@Test
+	void testPricesAreValidatedInWholeCents() {
+		// Given
+		ExpenseFieldsValidator validator = new ExpenseFieldsValidator();
+		LocalDate date = LocalDate.of(2024, 1, 5);
+
+		// When
+		List<Boolean> valid = DoubleStream.of(0.004, 0.005, Double.NaN, Double.POSITIVE_INFINITY, -1.0, 1e30)
+				.mapToObj(price -> validator.validateExpenseFields(new Expense(null, Category.FOOD, price, date, null, null)))
+				.collect(Collectors.toList());
+
+		// Then: only 0.005 rounds to a whole cent, the unconvertible amounts are rejected instead of thrown
+		assertEquals(List.of(false, true, false, false, false, false), valid);
+	}
+
+	@Test
+	void testAddRethrowsOtherIntegrityViolations() {
+		// Given: a description longer than its column
+		Expense expense = new Expense(null, Category.FOOD, 12.0, LocalDate.of(2024, 1, 5), "Bread", Person.builder().id(1L).build());
+		Mockito.when(expenseFieldsValidator.validateExpenseFields(expense)).thenReturn(true);
+		Mockito.when(expenseRepository.saveAndFlush(expense)).thenThrow(new DataIntegrityViolationException("could not execute statement",
+				new SQLException("value too long for type character varying(255)", "22001")));
+
+		// When/Then
+		assertThrows(DataIntegrityViolationException.class, () -> expenseService.add(expense));
+		Mockito.verifyNoInteractions(monthlyRollupService);
+		Mockito.verify(personRepository, Mockito.never()).existsById(1L);
+	}
+
+	@Test
+	void testTextIndexRanksMatchesAndReloadsFromSnapshot(@TempDir Path directory) {
+		// Given
+		Long personId = 1L;
+		List<ExpenseView> expenses = List.of(
+				new ExpenseView(1L, Category.ENTERTAINMENT, 12.0, LocalDate.of(2023, 1, 5), "Netflix monthly subscription"),
+				new ExpenseView(2L, Category.HEALTH, 80.0, LocalDate.of(2023, 2, 5), "Vet for the dog"),
+				new ExpenseView(3L, Category.ENTERTAINMENT, 12.0, LocalDate.of(2023, 3, 5), "NETFLIX"),
+				new ExpenseView(4L, Category.HEALTH, 95.0, LocalDate.of(2023, 4, 5), "Veterinary clinic, café"),
+				new ExpenseView(5L, Category.FOOD, 20.0, LocalDate.of(2023, 5, 5), null));
+		Mockito.when(expenseRepository.findIdsByPersonId(personId, Pageable.unpaged())).thenReturn(List.of(1L, 2L, 3L, 4L, 5L));
+		Mockito.when(expenseRepository.findByPersonId(personId)).thenReturn(expenses);
+		ExpenseTextIndex index = new ExpenseTextIndex(expenseRepository, directory.toString(), 10);
+
+		// When
+		List<Long> netflix = index.search(personId, "netflix", 10);
+		List<Long> vet = index.search(personId, "Vet", 10);
+		List<Long> cafe = index.search(personId, "cafe", 10);
+		index.flush();
+		List<Long> reloaded = new ExpenseTextIndex(expenseRepository, directory.toString(), 10).search(personId, "vet", 10);
+
+		// Then: the shorter description ranks first, an exact term before a prefix match
+		assertEquals(List.of(3L, 1L), netflix);
+		assertEquals(List.of(2L, 4L), vet);
+		assertEquals(List.of(4L), cafe);
+		assertEquals(vet, reloaded);
+		Mockito.verify(expenseRepository, Mockito.times(1)).findByPersonId(personId);
+	}
+
+	@Test
+	void testTextIndexRebuildsSnapshotMissingALowerIdFromAnotherInstance(@TempDir Path directory) {
+		// Given: a snapshot of expenses 1, 2 and 5, then another instance deletes 2 and adds 3 from its ID block
+		Long personId = 1L;
+		Mockito.when(expenseRepository.findIdsByPersonId(personId, Pageable.unpaged()))
+				.thenReturn(List.of(1L, 2L, 5L), List.of(1L, 3L, 5L));
+		Mockito.when(expenseRepository.findByPersonId(personId)).thenReturn(
+				List.of(new ExpenseView(1L, Category.FOOD, 5.0, LocalDate.of(2023, 1, 5), "Bread"),
+						new ExpenseView(2L, Category.FOOD, 2.0, LocalDate.of(2023, 1, 6), "Milk"),
+						new ExpenseView(5L, Category.FOOD, 3.0, LocalDate.of(2023, 1, 7), "Eggs")),
+				List.of(new ExpenseView(1L, Category.FOOD, 5.0, LocalDate.of(2023, 1, 5), "Bread"),
+						new ExpenseView(3L, Category.FOOD, 4.0, LocalDate.of(2023, 1, 8), "Milk chocolate"),
+						new ExpenseView(5L, Category.FOOD, 3.0, LocalDate.of(2023, 1, 7), "Eggs")));
+		ExpenseTextIndex index = new ExpenseTextIndex(expenseRepository, directory.toString(), 10);
+		index.search(personId, "milk", 10);
+		index.flush();
+
+		// When: the count and the highest ID still match the snapshot
+		List<Long> milk = new ExpenseTextIndex(expenseRepository, directory.toString(), 10).search(personId, "milk", 10);
+
+		// Then
+		assertEquals(List.of(3L), milk);
+		Mockito.verify(expenseRepository, Mockito.times(2)).findByPersonId(personId);
+	}
+
+	@Test
+	void testTextIndexAppliesChangesCommittedWhileItLoads(@TempDir Path directory) throws Exception {
+		// Given: a partition load whose query has read the expenses before another expense commits
+		Long personId = 1L;
+		CountDownLatch queried = new CountDownLatch(1);
+		CountDownLatch committed = new CountDownLatch(1);
+		Mockito.when(expenseRepository.findIdsByPersonId(personId, Pageable.unpaged())).thenReturn(List.of(1L));
+		Mockito.when(expenseRepository.findByPersonId(personId)).thenAnswer(invocation -> {
+			queried.countDown();
+			committed.await(5, TimeUnit.SECONDS);
+			return List.of(new ExpenseView(1L, Category.FOOD, 5.0, LocalDate.of(2023, 1, 5), "Bread"));
+		});
+		ExpenseTextIndex index = new ExpenseTextIndex(expenseRepository, directory.toString(), 10);
+		Expense milk = new Expense(2L, Category.FOOD, 2.0, LocalDate.of(2023, 1, 6), "Milk", null);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		// When
+		Future<List<Long>> bread = executor.submit(() -> index.search(personId, "bread", 10));
+		assertTrue(queried.await(5, TimeUnit.SECONDS));
+		Future<?> add = executor.submit(() -> index.addAfterCommit(personId, List.of(milk)));
+		Thread.sleep(100);
+		committed.countDown();
+		add.get(5, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		// Then: the add waited for the load instead of being skipped
+		assertEquals(List.of(1L), bread.get(5, TimeUnit.SECONDS));
+		assertEquals(List.of(2L), index.search(personId, "milk", 10));
+	}
+
+	@Test
+	void testColumnStoreAnswersRangesAndStaysCoherentWithinBudget() {
+		// Given
+		Long personId = 1L;
+		Mockito.when(expenseRepository.findColumnsByPersonId(Mockito.anyLong())).thenReturn(List.of(
+				new ExpenseView(1L, Category.FOOD, 1250L, LocalDate.of(2024, 1, 5)),
+				new ExpenseView(2L, Category.HEALTH, 8000L, LocalDate.of(2024, 1, 20)),
+				new ExpenseView(3L, Category.FOOD, 1250L, LocalDate.of(2024, 1, 31)),
+				new ExpenseView(4L, Category.HOME, 50000L, LocalDate.of(2024, 2, 1))));
+		ExpenseColumnStore store = new ExpenseColumnStore(expenseRepository, true, DataSize.ofBytes(500));
+		LocalDate january = LocalDate.of(2024, 1, 1);
+		LocalDate endOfJanuary = LocalDate.of(2024, 1, 31);
+
+		// When
+		ExpenseTotal total = store.total(personId, january, endOfJanuary);
+		List<CategoryTotal> breakdown = store.categoryBreakdown(personId, january, endOfJanuary);
+		List<ExpenseView> top = store.top(personId, january, endOfJanuary, 2);
+		Expense added = new Expense(5L, Category.FOOD, 10.01, LocalDate.of(2024, 1, 10), "Bread", Person.builder().id(personId).build());
+		store.addAfterCommit(personId, List.of(added));
+		store.addAfterCommit(personId, List.of(added));
+		store.removeAfterCommit(personId, 2L);
+		ExpenseTotal changed = store.total(personId, january, endOfJanuary);
+		store.total(2L, january, endOfJanuary);
+		store.total(3L, january, endOfJanuary);
+
+		// Then: equal prices rank the newer expense first, a repeated add is applied once
+		assertEquals(105.0, total.getTotal());
+		assertEquals(3L, total.getCount());
+		assertEquals(List.of(Category.HEALTH, Category.FOOD), breakdown.stream().map(CategoryTotal::getCategory).collect(Collectors.toList()));
+		assertEquals(12.5, breakdown.get(1).getAverage());
+		assertEquals(List.of(2L, 3L), top.stream().map(ExpenseView::getId).collect(Collectors.toList()));
+		assertEquals(35.01, changed.getTotal());
+		assertEquals(3L, changed.getCount());
+		assertTrue(store.memoryUsage() <= 500);
+		Mockito.verify(expenseRepository, Mockito.times(1)).findColumnsByPersonId(personId);
+	}
+
+	@Test
+	void testIdempotencyFilterRunsEachKeyOnceAndReplaysItsResponse() throws Exception {
+		// Given: an endpoint that counts its runs, fails the first run of key "flaky" and blocks while "slow" runs
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch slowEntered = new CountDownLatch(1);
+		CountDownLatch slowRelease = new CountDownLatch(1);
+		HttpServlet endpoint = new HttpServlet() {
+			@Override
+			protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+				int run = runs.incrementAndGet();
+				String key = request.getHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER);
+				if ("flaky".equals(key) && run == 3) {
+					response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+					return;
+				}
+				if ("slow".equals(key)) {
+					slowEntered.countDown();
+					try {
+						slowRelease.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				response.setContentType("application/json");
+				response.getWriter().write("{\"run\": " + run + "}");
+			}
+		};
+		IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(null, false, 100, Duration.ofHours(1), Duration.ofSeconds(5), Duration.ofMinutes(2)));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		// When
+		MockHttpServletResponse first = post(filter, endpoint, "retried");
+		MockHttpServletResponse retry = post(filter, endpoint, "retried");
+		MockHttpServletResponse other = post(filter, endpoint, "other");
+		MockHttpServletResponse failed = post(filter, endpoint, "flaky");
+		MockHttpServletResponse retriedFailure = post(filter, endpoint, "flaky");
+		Future<MockHttpServletResponse> slow = executor.submit(() -> post(filter, endpoint, "slow"));
+		assertTrue(slowEntered.await(5, TimeUnit.SECONDS));
+		Future<MockHttpServletResponse> duplicate = executor.submit(() -> post(filter, endpoint, "slow"));
+		slowRelease.countDown();
+		String slowBody = slow.get(5, TimeUnit.SECONDS).getContentAsString();
+		MockHttpServletResponse duplicateResponse = duplicate.get(5, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		// Then: a retry and a concurrent duplicate get the stored response, a failed run is not stored
+		assertEquals("{\"run\": 1}", first.getContentAsString());
+		assertEquals(first.getContentAsString(), retry.getContentAsString());
+		assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+		assertEquals("{\"run\": 2}", other.getContentAsString());
+		assertEquals(503, failed.getStatus());
+		assertEquals("{\"run\": 4}", retriedFailure.getContentAsString());
+		assertEquals(slowBody, duplicateResponse.getContentAsString());
+		assertEquals("true", duplicateResponse.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+		assertEquals(5, runs.get());
+	}
+
+	@Test
+	void testIdempotencyFilterDoesNotStoreHandledFailuresAndRejectsReusedKeys() throws Exception {
+		// Given: an endpoint echoing the body, whose first run fails with an exception the ControllerAdvice answers with 200
+		AtomicInteger runs = new AtomicInteger();
+		HttpServlet endpoint = new HttpServlet() {
+			@Override
+			protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+				if (runs.incrementAndGet() == 1) {
+					request.setAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE, new NoPersonFoundException("No person found with ID: 1"));
+					response.getWriter().write("No person found with ID: 1");
+					return;
+				}
+				response.getWriter().write(StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8));
+			}
+		};
+		IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(null, false, 100, Duration.ofHours(1), Duration.ofSeconds(5), Duration.ofMinutes(2)));
+
+		// When
+		MockHttpServletResponse failed = post(filter, endpoint, "key", "{\"personId\": 1}");
+		MockHttpServletResponse retry = post(filter, endpoint, "key", "{\"personId\": 1}");
+		MockHttpServletResponse replay = post(filter, endpoint, "key", "{\"personId\": 1}");
+		MockHttpServletResponse reused = post(filter, endpoint, "key", "{\"personId\": 2}");
+
+		// Then: the handled failure ran again on retry, the stored response is only replayed for the same body
+		assertEquals(200, failed.getStatus());
+		assertEquals("{\"personId\": 1}", retry.getContentAsString());
+		assertEquals("true", replay.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+		assertEquals(422, reused.getStatus());
+		assertEquals(2, runs.get());
+	}
+
+	private static MockHttpServletResponse post(IdempotencyFilter filter, HttpServlet endpoint, String key) throws Exception {
+		return post(filter, endpoint, key, "{}");
+	}
+
+	private static MockHttpServletResponse post(IdempotencyFilter filter, HttpServlet endpoint, String key, String body) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/expense/add");
+		request.setServletPath("/api/expense/add");
+		request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+		request.setContent(body.getBytes(StandardCharsets.UTF_8));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain(endpoint));
+		return response;
 	}
 
 	@Test
@@ -261,28 +841,34 @@ class ExpensesApplicationTests {
 		LoginRequest request = new LoginRequest(email, password);
 		Person person = new Person(1L, email, password, "Alex", Role.USER, true, null);
 		String jwtToken = "jwtToken";
+		Date expiresAt = new Date(1_800_000_000_000L);
 
-		// Mocking the repository and service calls
-		Mockito.when(personRepository.findByEmail(email)).thenReturn(Optional.of(person));
-		Mockito.when(jwtService.generateToken(person)).thenReturn(jwtToken);
+		// Mocking the token generation
+		Mockito.when(jwtService.issueToken(person)).thenReturn(new VerifiedToken(jwtToken, Jwts.claims().setExpiration(expiresAt)));
 
-		// Mocking the authentication manager call
+		// Mocking the authentication manager call, which returns the person it loaded as the principal
 		Mockito.when(authenticationManager.authenticate(Mockito.any(UsernamePasswordAuthenticationToken.class)))
-				.thenAnswer(invocation -> null);
+				.thenReturn(new UsernamePasswordAuthenticationToken(person, null, person.getAuthorities()));
 
 		// When
 		LoginResponse response = authenticationService.authenticate(request);
 
 		// Then
 		assertEquals(jwtToken, response.getToken());
-		assertEquals(person, response.getPerson());
+		assertEquals(expiresAt, response.getTokenExpiresAt());
+		assertEquals(1L, response.getId());
+		assertEquals("Alex", response.getName());
+		assertEquals(Role.USER, response.getRole());
+		Mockito.verify(personRepository, Mockito.never()).findByEmail(email);
+		Mockito.verify(jwtService, Mockito.never()).verify(jwtToken);
 	}
 
 	@Test
 	void testGetAllThrowsNoPersonFoundExceptionWhenPersonDoesNotExist() {
 		// Given
 		Long personId = 1L;
-		Mockito.when(personRepository.findById(personId)).thenReturn(Optional.empty());
+		Mockito.when(expenseRepository.findByPersonId(personId)).thenReturn(Collections.emptyList());
+		Mockito.when(personRepository.existsById(personId)).thenReturn(false);
 
 		// When/Then
 		assertThrows(NoPersonFoundException.class, () -> expenseService.getAll(personId));
@@ -292,7 +878,7 @@ class ExpensesApplicationTests {
 	void testGetAllThrowsNoExpensesFoundExceptionWhenNoExpensesExist() {
 		// Given
 		Long personId = 1L;
-		Mockito.when(personRepository.findById(personId)).thenReturn(Optional.of(new Person()));
+		Mockito.when(personRepository.existsById(personId)).thenReturn(true);
 		Mockito.when(expenseRepository.findByPersonId(personId)).thenReturn(Collections.emptyList());
 
 		// When/Then
@@ -303,26 +889,388 @@ class ExpensesApplicationTests {
 	void testGetAllReturnsExpensesSuccessfully() throws NoExpensesFoundException, NoPersonFoundException {
 		// Given
 		Long personId = 1L;
-		Person person = new Person();
-		Expense expense1 = new Expense();
-		Expense expense2 = new Expense();
-		Expense expense3 = new Expense();
-		Expense expense4 = new Expense();
-		Expense expense5 = new Expense();
-		Expense expense6 = new Expense();
-		Expense expense7 = new Expense();
-		Expense expense8 = new Expense();
-		List<Expense> expenses = List.of(expense1, expense2, expense3, expense4, expense5, expense6, expense7, expense8);
+		ExpenseView expense1 = new ExpenseView();
+		ExpenseView expense2 = new ExpenseView();
+		ExpenseView expense3 = new ExpenseView();
+		ExpenseView expense4 = new ExpenseView();
+		ExpenseView expense5 = new ExpenseView();
+		ExpenseView expense6 = new ExpenseView();
+		ExpenseView expense7 = new ExpenseView();
+		ExpenseView expense8 = new ExpenseView();
+		List<ExpenseView> expenses = List.of(expense1, expense2, expense3, expense4, expense5, expense6, expense7, expense8);
 
-		Mockito.when(personRepository.findById(personId)).thenReturn(Optional.of(person));
 		Mockito.when(expenseRepository.findByPersonId(personId)).thenReturn(expenses);
 
 		// When
-		List<Expense> result = expenseService.getAll(personId);
+		List<ExpenseView> result = expenseService.getAll(personId);
 
 		// Then
 		assertNotNull(result);
 		assertEquals(8, result.size());
 		assertEquals(expenses, result);
+		Mockito.verifyNoInteractions(personRepository);
+	}
+
+	@Test
+	void testVerifiedTokenIsParsedOnceAndCached() {
+		// Given
+		JwtService realJwtService = createJwtService(new TokenRevocationRegistry(Duration.ofHours(100)), false);
+		Person person = new Person(1L, "test@example.com", "password", "Alex", Role.USER, true, null);
+		String token = realJwtService.generateToken(person);
+
+		// When
+		VerifiedToken first = realJwtService.verify(token);
+		VerifiedToken second = realJwtService.verify(token);
+
+		// Then
+		assertSame(first, second);
+		assertEquals("test@example.com", first.getSubject());
+		assertTrue(realJwtService.isTokenValid(first, person));
+	}
+
+	@Test
+	void testIssuedTokenClaimsMatchTheSignedToken() {
+		// Given
+		JwtService realJwtService = createJwtService(new TokenRevocationRegistry(Duration.ofHours(100)), true);
+		Person person = new Person(7L, "test@example.com", "password", "Alex", Role.ADMIN, true, null);
+
+		// When
+		VerifiedToken issued = realJwtService.issueToken(person);
+		VerifiedToken parsed = realJwtService.verify(issued.getToken());
+
+		// Then
+		assertEquals(parsed.getSubject(), issued.getSubject());
+		assertEquals(parsed.getExpiration(), issued.getExpiration());
+		assertEquals(parsed.getIssuedAt(), issued.getIssuedAt());
+		assertEquals(parsed.getClaim("id", Number.class).longValue(), issued.getClaim("id", Number.class).longValue());
+		assertThrows(UnsupportedOperationException.class, () -> parsed.getClaims().put("role", "ADMIN"));
+		parsed.getExpiration().setTime(0);
+		assertFalse(parsed.isExpired());
+	}
+
+	@Test
+	void testStatelessPrincipalIsBuiltFromClaimsAndRevokedOnDeletion() {
+		// Given
+		TokenRevocationRegistry tokenRevocationRegistry = new TokenRevocationRegistry(Duration.ofHours(100));
+		JwtService realJwtService = createJwtService(tokenRevocationRegistry, true);
+		Person person = new Person(7L, "test@example.com", "password", "Alex", Role.ADMIN, true, null);
+		VerifiedToken verifiedToken = realJwtService.verify(realJwtService.generateToken(person));
+
+		// When
+		UserDetails principal = realJwtService.extractPrincipal(verifiedToken);
+
+		// Then
+		assertEquals("test@example.com", principal.getUsername());
+		assertEquals("ADMIN", principal.getAuthorities().iterator().next().getAuthority());
+		assertFalse(realJwtService.isTokenRevoked(verifiedToken));
+
+		tokenRevocationRegistry.revoke(person.getEmail());
+		assertTrue(realJwtService.isTokenRevoked(verifiedToken));
+	}
+
+	@Test
+	void testTokensAreOnlyRevokedByARecordedRevocation() {
+		// Given: a token of a new person, checked by an instance that never saw the person registering
+		JwtService issuer = createJwtService(new TokenRevocationRegistry(Duration.ofHours(100)), true);
+		TokenRevocationRegistry otherInstanceRegistry = new TokenRevocationRegistry(Duration.ofHours(100));
+		JwtService otherInstance = createJwtService(otherInstanceRegistry, true);
+		Person person = new Person(7L, "new@example.com", "password", "Alex", Role.USER, true, null);
+		VerifiedToken verifiedToken = otherInstance.verify(issuer.generateToken(person));
+
+		// When
+		boolean revokedBefore = otherInstance.isTokenRevoked(verifiedToken);
+		otherInstanceRegistry.revoke(person.getEmail());
+		boolean revokedAfter = otherInstance.isTokenRevoked(verifiedToken);
+
+		// Then
+		assertFalse(revokedBefore);
+		assertTrue(revokedAfter);
+	}
+
+	@Test
+	void testTokensAreRevokedOnlyWhenTheDeletionCommits() {
+		// Given
+		TokenRevocationRegistry registry = new TokenRevocationRegistry(Duration.ofHours(100));
+
+		// When: one deletion rolls back, the other commits
+		TransactionSynchronizationManager.initSynchronization();
+		registry.revokeAfterCommit("rolled-back@example.com");
+		TransactionSynchronizationManager.clearSynchronization();
+		TransactionSynchronizationManager.initSynchronization();
+		registry.revokeAfterCommit("committed@example.com");
+		Instant beforeCommit = registry.revokedAt("committed@example.com");
+		TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		TransactionSynchronizationManager.clearSynchronization();
+
+		// Then
+		assertNull(beforeCommit);
+		assertNull(registry.revokedAt("rolled-back@example.com"));
+		assertNotNull(registry.revokedAt("committed@example.com"));
+	}
+
+	@Test
+	void testColumnStoreAppliesChangesCommittedWhileItLoads() throws Exception {
+		// Given: a partition load whose query has read the expenses before one of them is deleted
+		Long personId = 1L;
+		CountDownLatch queried = new CountDownLatch(1);
+		CountDownLatch committed = new CountDownLatch(1);
+		Mockito.when(expenseRepository.findColumnsByPersonId(personId)).thenAnswer(invocation -> {
+			queried.countDown();
+			committed.await(5, TimeUnit.SECONDS);
+			return List.of(new ExpenseView(1L, Category.FOOD, 1250L, LocalDate.of(2024, 1, 5)),
+					new ExpenseView(2L, Category.HEALTH, 8000L, LocalDate.of(2024, 1, 20)));
+		});
+		ExpenseColumnStore store = new ExpenseColumnStore(expenseRepository, true, DataSize.ofKilobytes(1));
+		LocalDate january = LocalDate.of(2024, 1, 1);
+		LocalDate endOfJanuary = LocalDate.of(2024, 1, 31);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		// When
+		Future<ExpenseTotal> loaded = executor.submit(() -> store.total(personId, january, endOfJanuary));
+		assertTrue(queried.await(5, TimeUnit.SECONDS));
+		Future<?> delete = executor.submit(() -> store.removeAfterCommit(personId, 2L));
+		Thread.sleep(100);
+		committed.countDown();
+		delete.get(5, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		// Then: the delete waited for the load instead of being skipped
+		assertEquals(92.5, loaded.get(5, TimeUnit.SECONDS).getTotal());
+		assertEquals(12.5, store.total(personId, january, endOfJanuary).getTotal());
+	}
+
+	@Test
+	void testSummaryLoadedDuringInvalidateAllIsNotServedAfterwards() {
+		// Given: a load that is still computing when all summaries are invalidated
+		ExpenseSummaryCache cache = new ExpenseSummaryCache(new ExpenseVersionRegistry(true), 100, Duration.ofMinutes(5));
+		AtomicInteger loads = new AtomicInteger();
+
+		// When
+		int stale = cache.get(1L, "total", () -> {
+			cache.invalidateAll();
+			return loads.incrementAndGet();
+		});
+		int fresh = cache.get(1L, "total", loads::incrementAndGet);
+
+		// Then
+		assertEquals(1, stale);
+		assertEquals(2, fresh);
+	}
+
+	@Test
+	void testSummariesAndETagsAreOffWithoutLocalVersions() {
+		// Given: a deployment that may run more than one instance
+		ExpenseVersionRegistry registry = new ExpenseVersionRegistry(false);
+		ExpenseSummaryCache cache = new ExpenseSummaryCache(registry, 100, Duration.ofMinutes(5));
+		AtomicInteger loads = new AtomicInteger();
+
+		// When
+		cache.get(1L, "total", loads::incrementAndGet);
+		int second = cache.get(1L, "total", loads::incrementAndGet);
+
+		// Then: every read is loaded, and no ETag is offered
+		assertEquals(2, second);
+		assertEquals(0, cache.size());
+		assertNull(registry.etag(1L));
+	}
+
+	@Test
+	void testPersonDeletionStoppedPartWayKeepsRollupsAndCachesConsistent() throws Exception {
+		// Given: one chunk of expenses, then a failure deleting the person itself
+		PersonService personService = Mockito.mock(PersonService.class);
+		MonthlyRollup share = new MonthlyRollup(1L, 202401, Category.FOOD, 2500L, 2L);
+		Mockito.when(personRepository.findEmailById(1L)).thenReturn(Optional.of("test@example.com"));
+		Mockito.when(expenseRepository.findIdsByPersonId(Mockito.eq(1L), Mockito.any())).thenReturn(List.of(1L, 2L), List.of());
+		Mockito.when(expenseRepository.sumRollupSharesByIdIn(List.of(1L, 2L))).thenReturn(List.of(share));
+		Mockito.when(expenseRepository.deleteByIdIn(List.of(1L, 2L))).thenReturn(2);
+		Mockito.doThrow(new NoPersonFoundException("No person found with 1 id.")).when(personService).deleteById(1L);
+		PersonDeletionService deletionService = new PersonDeletionService(personService, personRepository, expenseRepository, monthlyRollupService,
+				expenseSummaryCache, expenseTextIndex, expenseColumnStore, new TokenRevocationRegistry(Duration.ofHours(100)), transactionManager);
+		ReflectionTestUtils.setField(deletionService, "chunkSize", 50);
+		deletionService.init();
+
+		// When
+		PersonDeletionStatus status = deletionService.start(1L);
+		for (int i = 0; i < 100 && status.getState() == PersonDeletionStatus.State.RUNNING; i++) {
+			Thread.sleep(10);
+			status = deletionService.getStatus(status.getDeletionId());
+		}
+		deletionService.shutdown();
+
+		// Then: the deleted chunk already left the rollups, the cached summaries and the in-memory indexes
+		assertEquals(PersonDeletionStatus.State.FAILED, status.getState());
+		assertEquals(2L, status.getExpensesDeleted());
+		Mockito.verify(monthlyRollupService).applyDeleted(share);
+		Mockito.verify(expenseSummaryCache).invalidateAfterCommit(1L);
+		Mockito.verify(expenseTextIndex).dropAfterCommit(1L);
+		Mockito.verify(expenseColumnStore).dropAfterCommit(1L);
+	}
+
+	@Test
+	void testCachingUserDetailsServiceCachesSnapshotUntilEvicted() {
+		// Given
+		UserDetailsService databaseUserDetailsService = Mockito.mock(UserDetailsService.class);
+		Person person = new Person(1L, "test@example.com", "password", "Alex", Role.USER, true, null);
+		Mockito.when(databaseUserDetailsService.loadUserByUsername("test@example.com")).thenReturn(person);
+		CachingUserDetailsService cachingUserDetailsService = new CachingUserDetailsService(databaseUserDetailsService, 10, Duration.ofMinutes(5));
+
+		// When
+		UserDetails first = cachingUserDetailsService.loadUserByUsername("test@example.com");
+		UserDetails second = cachingUserDetailsService.loadUserByUsername("test@example.com");
+		cachingUserDetailsService.evict("test@example.com");
+		cachingUserDetailsService.loadUserByUsername("test@example.com");
+
+		// Then
+		assertTrue(first instanceof PersonPrincipal);
+		assertSame(first, second);
+		assertEquals(1, cachingUserDetailsService.stats().hitCount());
+		Mockito.verify(databaseUserDetailsService, Mockito.times(2)).loadUserByUsername("test@example.com");
+	}
+
+	@Test
+	void testAddAllPersistsValidExpensesAndReportsInvalidOnes() throws NoPersonFoundException {
+		// Given
+		long personId = 1L;
+		Person person = new Person();
+		person.setId(personId);
+		Expense valid = new Expense(null, Category.FOOD, 10.0, LocalDate.now(), "Bread", null);
+		Expense invalid = new Expense(null, null, 10.0, LocalDate.now(), "Milk", null);
+		ReflectionTestUtils.setField(expenseBatchService, "batchSize", 50);
+		Mockito.when(personRepository.findById(personId)).thenReturn(Optional.of(person));
+		Mockito.when(expenseFieldsValidator.validateExpenseFields(valid)).thenReturn(true);
+		Mockito.when(expenseFieldsValidator.validateExpenseFields(invalid)).thenReturn(false);
+
+		// When
+		ExpenseBatchResponse response = expenseBatchService.addAll(personId, List.of(valid, invalid));
+
+		// Then
+		assertEquals(1, response.getAdded());
+		assertEquals(1, response.getIds().size());
+		assertEquals(1, response.getErrors().size());
+		assertEquals(1, response.getErrors().get(0).getIndex());
+		assertEquals(person, valid.getPerson());
+		Mockito.verify(entityManager).persist(valid);
+		Mockito.verify(entityManager, Mockito.never()).persist(invalid);
+	}
+
+	@Test
+	void testDatabaseVendorIsResolvedOnceFromTheDialect() {
+		// Given
+		EntityManagerFactory entityManagerFactory = Mockito.mock(EntityManagerFactory.class);
+		SessionFactoryImplementor sessionFactory = Mockito.mock(SessionFactoryImplementor.class);
+		JdbcServices jdbcServices = Mockito.mock(JdbcServices.class);
+		Mockito.when(entityManagerFactory.unwrap(SessionFactoryImplementor.class)).thenReturn(sessionFactory);
+		Mockito.when(sessionFactory.getJdbcServices()).thenReturn(jdbcServices);
+		Mockito.when(jdbcServices.getDialect()).thenReturn(new MariaDB103Dialect(), new PostgreSQL10Dialect());
+		DatabaseVendorResolver resolver = new DatabaseVendorResolver(entityManagerFactory);
+
+		// When
+		DatabaseVendorResolver.Vendor first = resolver.vendor();
+		DatabaseVendorResolver.Vendor second = resolver.vendor();
+
+		// Then
+		assertEquals(DatabaseVendorResolver.Vendor.MYSQL, first);
+		assertEquals(first, second);
+		Mockito.verify(jdbcServices, Mockito.times(1)).getDialect();
+	}
+
+	@Test
+	void testExportStreamsRowsOnMySqlWithoutCursorFetch() throws Exception {
+		// Given
+		JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+		ExpenseExportService exportService = new ExpenseExportService(jdbcTemplate, Mockito.mock(PlatformTransactionManager.class), new ObjectMapper());
+		ReflectionTestUtils.setField(exportService, "fetchSize", 500);
+		exportService.export(1L, ExpenseExportService.ExportFormat.CSV, new ByteArrayOutputStream());
+		ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+		Mockito.verify(jdbcTemplate).query(creator.capture(), Mockito.any(RowCallbackHandler.class));
+
+		// When
+		PreparedStatement mysql = prepareExport(creator.getValue(), "MySQL Connector/J", "jdbc:mysql://localhost/expenses");
+		PreparedStatement mysqlCursor = prepareExport(creator.getValue(), "MySQL Connector/J", "jdbc:mysql://localhost/expenses?useCursorFetch=true");
+		PreparedStatement postgres = prepareExport(creator.getValue(), "PostgreSQL JDBC Driver", "jdbc:postgresql://localhost/expenses");
+
+		// Then
+		Mockito.verify(mysql).setFetchSize(Integer.MIN_VALUE);
+		Mockito.verify(mysqlCursor).setFetchSize(500);
+		Mockito.verify(postgres).setFetchSize(500);
+	}
+
+	@Test
+	void testCsvValuesAreQuotedOnlyWhenNeeded() {
+		assertEquals("", ExpenseExportService.csvValue(null));
+		assertEquals("Groceries", ExpenseExportService.csvValue("Groceries"));
+		assertEquals("\"Milk, bread\"", ExpenseExportService.csvValue("Milk, bread"));
+		assertEquals("\"The \"\"big\"\" one\"", ExpenseExportService.csvValue("The \"big\" one"));
+	}
+
+	@Test
+	void testCsvReaderReadsQuotedValuesAcrossLines() throws IOException {
+		// Given
+		CsvReader reader = new CsvReader(new StringReader("date,category,price,description\n2024-01-05,FOOD,12.5,\"Milk, \"\"fresh\"\"\nand bread\"\n"));
+
+		// When
+		List<String> header = reader.readRecord();
+		List<String> record = reader.readRecord();
+
+		// Then
+		assertEquals(List.of("date", "category", "price", "description"), header);
+		assertEquals(List.of("2024-01-05", "FOOD", "12.5", "Milk, \"fresh\"\nand bread"), record);
+		assertEquals(3, reader.getLineNumber());
+		assertNull(reader.readRecord());
+	}
+
+	@Test
+	void testMoneyRoundsAmountsToWholeCents() {
+		// When, then
+		assertEquals(101, Money.toCents(1.005));
+		assertEquals(1250, Money.toCents(12.5));
+		assertEquals(-1999, Money.toCents(-19.99));
+		assertEquals(0.3, Money.toAmount(Money.toCents(0.1) + Money.toCents(0.2)));
+	}
+
+	@Test
+	void testAggregationsSumCountAndBucketPrimitiveColumns() {
+		// Given: prices in cents and days as yyyyMMdd
+		long[] cents = {1250, 99, 400, 10001, 7};
+		int[] days = {20240105, 20240131, 20240201, 20240215, 20240301};
+		int[] months = {0, 0, 1, 1, 2};
+
+		// When
+		long[] monthTotals = new long[3];
+		long[] monthCounts = new long[3];
+		Aggregations.sumByBucket(cents, months, 0, cents.length, monthTotals);
+		Aggregations.countByBucket(months, 0, cents.length, monthCounts);
+
+		// Then
+		assertEquals(11757, Aggregations.sum(cents, 0, cents.length));
+		assertEquals(499, Aggregations.sum(cents, 1, 3));
+		assertEquals(7, Aggregations.min(cents, 0, cents.length));
+		assertEquals(10001, Aggregations.max(cents, 0, cents.length));
+		assertEquals(2, Aggregations.countBetween(days, 0, days.length, 20240201, 20240229));
+		assertEquals(10401, Aggregations.sumBetween(cents, days, 0, days.length, 20240201, 20240229));
+		assertArrayEquals(new long[]{1349, 10401, 7}, monthTotals);
+		assertArrayEquals(new long[]{2, 2, 1}, monthCounts);
+		assertEquals(0, Aggregations.sum(cents, 2, 2));
+	}
+
+	private static PreparedStatement prepareExport(PreparedStatementCreator creator, String driverName, String url) throws SQLException {
+		Connection connection = Mockito.mock(Connection.class);
+		DatabaseMetaData metaData = Mockito.mock(DatabaseMetaData.class);
+		PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+		Mockito.when(connection.getMetaData()).thenReturn(metaData);
+		Mockito.when(metaData.getDriverName()).thenReturn(driverName);
+		Mockito.when(metaData.getURL()).thenReturn(url);
+		Mockito.when(connection.prepareStatement(Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt())).thenReturn(statement);
+		return creator.createPreparedStatement(connection);
+	}
+
+	private static JwtService createJwtService(TokenRevocationRegistry tokenRevocationRegistry, boolean statelessPrincipal) {
+		JwtService realJwtService = new JwtService(tokenRevocationRegistry);
+		ReflectionTestUtils.setField(realJwtService, "SECRET_KEY", "c2VjcmV0LWtleS1mb3ItdGVzdHMtb25seS0wMTIzNDU2Nzg5YWJjZGVm");
+		ReflectionTestUtils.setField(realJwtService, "expiration", Duration.ofHours(100));
+		ReflectionTestUtils.setField(realJwtService, "cacheMaxSize", 10L);
+		ReflectionTestUtils.setField(realJwtService, "statelessPrincipal", statelessPrincipal);
+		realJwtService.init();
+		return realJwtService;
 	}
 }
@@ -0,0 +1,263 @@
+package app.expenses_application;
+
+import app.expenses_application.dto.StoredResponse;
+import app.expenses_application.exception.IdempotencyConflictException;
+import app.expenses_application.exception.IdempotencyKeyReusedException;
+import app.expenses_application.repository.IdempotencyKeyRepository;
+import app.expenses_application.service.IdempotencyStore;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the versioned migrations against an embedded database, validates the entity mappings against them
+ * and checks that the expense access patterns are planned on the composite indexes.
+ * The tables are filled and analyzed once, so the planner has the statistics it would have in production.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SchemaMigrationsTests {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	void setUp() {
+		List<Object[]> people = new ArrayList<>();
+		for (int i = 1; i <= 20; i++) {
+			people.add(new Object[]{(long) i, "person" + i + "@example.com"});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO person (id, email, password, name, role, enabled) VALUES (?, ?, 'x', 'Person', 'USER', TRUE)", people);
+
+		String[] categories = {"FOOD", "TRANSPORT", "HOUSING", "HEALTH", "ENTERTAINMENT"};
+		List<Object[]> expenses = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			LocalDate date = LocalDate.of(2023, 1, 1).plusDays(i % 730);
+			expenses.add(new Object[]{(long) i + 1, categories[i % categories.length], 1000L, Date.valueOf(date), (long) i % 20 + 1});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO expense (id, category, price_cents, date, person_id) VALUES (?, ?, ?, ?, ?)", expenses);
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	@Test
+	void testDateRangeTotalUsesPersonDateIndex() {
+		// given
+		String sql = "SELECT SUM(price_cents), COUNT(*) FROM expense WHERE person_id = 1 "
+				+ "AND date BETWEEN DATE '2024-01-01' AND DATE '2024-01-31'";
+
+		// when
+		String plan = explain(sql);
+
+		// then
+		assertTrue(plan.contains("IDX_EXPENSE_PERSON_DATE"), plan);
+	}
+
+	@Test
+	void testKeysetPageUsesPersonDateIndex() {
+		// given
+		String sql = "SELECT * FROM expense WHERE person_id = 1 "
+				+ "AND date <= DATE '2024-01-15' AND (date < DATE '2024-01-15' OR id < 100) "
+				+ "ORDER BY date DESC, id DESC LIMIT 50";
+
+		// when
+		String plan = explain(sql);
+
+		// then
+		assertTrue(plan.contains("IDX_EXPENSE_PERSON_DATE"), plan);
+	}
+
+	@Test
+	void testSearchUsesPersonIndexes() {
+		// given: the shape of the search query with a date cursor, without and with a category filter
+		String filters = "person_id = 1 AND date BETWEEN DATE '2023-06-01' AND DATE '2024-06-01' "
+				+ "AND price_cents BETWEEN 500 AND 5000 AND LOWER(description) LIKE '%bread%' ESCAPE '\\' "
+				+ "AND date <= DATE '2024-01-15' AND (date < DATE '2024-01-15' OR id < 100) ";
+		String sql = "SELECT id, category, price_cents, date, description FROM expense WHERE " + filters
+				+ "ORDER BY date DESC, id DESC LIMIT 51";
+		String categorySql = "SELECT id, category, price_cents, date, description FROM expense WHERE " + filters
+				+ "AND category IN ('FOOD', 'HEALTH') ORDER BY date DESC, id DESC LIMIT 51";
+
+		// when
+		String plan = explain(sql);
+		String categoryPlan = explain(categorySql);
+
+		// then: the date bounds narrow the range of either composite index
+		assertTrue(plan.contains("IDX_EXPENSE_PERSON_DATE"), plan);
+		assertTrue(categoryPlan.contains("IDX_EXPENSE_PERSON_DATE") || categoryPlan.contains("IDX_EXPENSE_PERSON_CATEGORY"), categoryPlan);
+	}
+
+	@Test
+	void testPriceOrderedSearchUsesPersonPriceIndex() {
+		// given: the shape of a price ordered search page after a cursor, without a date range
+		String sql = "SELECT id, category, price_cents, date, description FROM expense WHERE person_id = 1 "
+				+ "AND price_cents <= 1000 AND (price_cents < 1000 OR id < 100) ORDER BY price_cents DESC, id DESC LIMIT 51";
+
+		// when
+		String plan = explain(sql);
+
+		// then
+		assertTrue(plan.contains("IDX_EXPENSE_PERSON_PRICE"), plan);
+	}
+
+	@Test
+	void testCategoryPageUsesPersonCategoryIndex() {
+		// given
+		String sql = "SELECT * FROM expense WHERE person_id = 1 AND category = 'FOOD' "
+				+ "ORDER BY date DESC, id DESC LIMIT 50";
+
+		// when
+		String plan = explain(sql);
+
+		// then
+		assertTrue(plan.contains("IDX_EXPENSE_PERSON_CATEGORY"), plan);
+	}
+
+	@Test
+	void testLoginLookupUsesUniqueEmailIndex() {
+		// given
+		String sql = "SELECT * FROM person WHERE email = 'person1@example.com'";
+
+		// when
+		String plan = explain(sql);
+
+		// then
+		assertTrue(plan.contains("UK_PERSON_EMAIL"), plan);
+	}
+
+	@Test
+	void testDuplicateEmailIsRejected() {
+		// given
+		String sql = "INSERT INTO person (email, password, name, role, enabled) VALUES ('person1@example.com', 'x', 'Test', 'USER', TRUE)";
+
+		// when, then
+		assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(sql));
+	}
+
+	@Test
+	void testMoneyMigrationConvertsPricesToCentsAndRebuildsRollups() {
+		// given: a database at V4 with double prices and a drifted rollup total
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:money-migration;DB_CLOSE_DELAY=-1", "sa", "");
+		Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").target("4").load().migrate();
+		JdbcTemplate legacy = new JdbcTemplate(dataSource);
+		legacy.update("INSERT INTO person (id, email, password, name, role, enabled) VALUES (1, 'legacy@example.com', 'x', 'Legacy', 'USER', TRUE)");
+		legacy.update("INSERT INTO expense (id, category, price, date, person_id) VALUES (1, 'FOOD', 1.005, DATE '2024-01-05', 1)");
+		legacy.update("INSERT INTO expense (id, category, price, date, person_id) VALUES (2, 'FOOD', 0.1, DATE '2024-01-06', 1)");
+		legacy.update("INSERT INTO expense (id, category, price, date, person_id) VALUES (3, 'FOOD', 0.2, DATE '2024-01-07', 1)");
+		legacy.update("INSERT INTO monthly_rollup (person_id, rollup_month, category, total, expense_count) VALUES (1, 202401, 'FOOD', 1.30499, 3)");
+
+		// when
+		Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").load().migrate();
+
+		// then
+		assertEquals(List.of(101L, 10L, 20L), legacy.queryForList("SELECT price_cents FROM expense ORDER BY id", Long.class));
+		assertEquals(131L, legacy.queryForObject("SELECT total_cents FROM monthly_rollup WHERE person_id = 1", Long.class));
+		legacy.execute("DROP ALL OBJECTS");
+	}
+
+	@Test
+	void testPersistentIdempotencyKeysAreSharedBetweenInstances() throws IdempotencyConflictException, IdempotencyKeyReusedException {
+		// given: two application instances sharing the idempotency key table
+		IdempotencyKeyRepository repository = new IdempotencyKeyRepository(jdbcTemplate);
+		IdempotencyStore first = new IdempotencyStore(repository, true, 100, Duration.ofHours(1), Duration.ofMillis(200), Duration.ofMinutes(2));
+		IdempotencyStore second = new IdempotencyStore(repository, true, 100, Duration.ofHours(1), Duration.ofMillis(200), Duration.ofMinutes(2));
+		byte[] request = "{\"category\": \"FOOD\", \"price\": 12.5}".getBytes(StandardCharsets.UTF_8);
+		byte[] otherRequest = "{\"category\": \"FOOD\", \"price\": 99}".getBytes(StandardCharsets.UTF_8);
+		byte[] body = "{\"message\": \"Expense added successfully.\"}".getBytes(StandardCharsets.UTF_8);
+
+		// when
+		IdempotencyStore.Claim claim = first.claim("user /api/expense/add", "key-1", request);
+		assertThrows(IdempotencyConflictException.class, () -> second.claim("user /api/expense/add", "key-1", request));
+		claim.complete(new StoredResponse(200, "application/json", body, claim.getRequestHash()));
+		StoredResponse replay = second.claim("user /api/expense/add", "key-1", request).getReplay();
+		IdempotencyStore.Claim otherScope = second.claim("other /api/expense/add", "key-1", request);
+		IdempotencyStore third = new IdempotencyStore(repository, true, 100, Duration.ofHours(1), Duration.ofMillis(200), Duration.ofMinutes(2));
+		assertThrows(IdempotencyKeyReusedException.class, () -> third.claim("user /api/expense/add", "key-1", otherRequest));
+
+		// then: the key is only hashed into the table, and it is scoped by the caller
+		assertNull(claim.getReplay());
+		assertEquals(200, replay.getStatus());
+		assertArrayEquals(body, replay.getBody());
+		assertNull(otherScope.getReplay());
+		assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_key WHERE LENGTH(key_hash) = 64", Integer.class));
+	}
+
+	@Test
+	void testFailedOrAbandonedIdempotencyClaimsDoNotBlockTheirKeys() throws IdempotencyConflictException, IdempotencyKeyReusedException {
+		// given: a DB failing the first lookup, and a claim left by an instance that crashed 5 minutes ago
+		boolean[] failed = {false};
+		IdempotencyKeyRepository flaky = new IdempotencyKeyRepository(jdbcTemplate) {
+			@Override
+			public Optional<StoredResponse> findCompleted(String keyHash, Instant notBefore) {
+				if (!failed[0]) {
+					failed[0] = true;
+					throw new DataAccessResourceFailureException("Connection refused");
+				}
+				return super.findCompleted(keyHash, notBefore);
+			}
+		};
+		IdempotencyStore store = new IdempotencyStore(flaky, true, 100, Duration.ofHours(1), Duration.ofMillis(200), Duration.ofMinutes(2));
+		IdempotencyStore crashed = new IdempotencyStore(new IdempotencyKeyRepository(jdbcTemplate), true, 100, Duration.ofHours(1), Duration.ofMillis(200), Duration.ofMinutes(2));
+		crashed.claim("user /api/expense/add", "abandoned", new byte[0]);
+		jdbcTemplate.update("UPDATE idempotency_key SET created_at = ?", Timestamp.from(Instant.now().minus(Duration.ofMinutes(5))));
+
+		// when
+		assertThrows(DataAccessResourceFailureException.class, () -> store.claim("user /api/expense/add", "key-2", new byte[0]));
+		IdempotencyStore.Claim retry = store.claim("user /api/expense/add", "key-2", new byte[0]);
+		IdempotencyStore.Claim takeover = store.claim("user /api/expense/add", "abandoned", new byte[0]);
+
+		// then: both keys are claimed right away instead of waiting for a conflict
+		assertNull(retry.getReplay());
+		assertNull(takeover.getReplay());
+		assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_key WHERE created_at > ?", Integer.class,
+				Timestamp.from(Instant.now().minus(Duration.ofMinutes(1)))));
+	}
+
+	@Test
+	void testFailedCompletionKeepsTheIdempotencyClaim() throws IdempotencyConflictException, IdempotencyKeyReusedException {
+		// given: a DB failing to store the response of a request that already ran
+		IdempotencyKeyRepository failing = new IdempotencyKeyRepository(jdbcTemplate) {
+			@Override
+			public void complete(String keyHash, StoredResponse response) {
+				throw new DataAccessResourceFailureException("Connection refused");
+			}
+		};
+		IdempotencyStore store = new IdempotencyStore(failing, true, 100, Duration.ofHours(1), Duration.ofMillis(200), Duration.ofMinutes(2));
+		IdempotencyStore other = new IdempotencyStore(new IdempotencyKeyRepository(jdbcTemplate), true, 100, Duration.ofHours(1), Duration.ofMillis(200), Duration.ofMinutes(2));
+		byte[] request = "{}".getBytes(StandardCharsets.UTF_8);
+		byte[] body = "{\"message\": \"Expense added successfully.\"}".getBytes(StandardCharsets.UTF_8);
+
+		// when
+		IdempotencyStore.Claim claim = store.claim("user /api/expense/add", "key-3", request);
+		claim.complete(new StoredResponse(200, "application/json", body, claim.getRequestHash()));
+		StoredResponse replay = store.claim("user /api/expense/add", "key-3", request).getReplay();
+
+		// then: the retry is replayed here, and another instance does not run it again while the lease holds
+		assertArrayEquals(body, replay.getBody());
+		assertThrows(IdempotencyConflictException.class, () -> other.claim("user /api/expense/add", "key-3", request));
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_key WHERE status IS NULL AND created_at > ?", Integer.class,
+				Timestamp.from(Instant.now().minus(Duration.ofMinutes(1)))));
+	}
+
+	private String explain(String sql) {
+		return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class).toUpperCase();
+	}
+}
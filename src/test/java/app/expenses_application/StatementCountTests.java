@@ -0,0 +1,541 @@
+package app.expenses_application;
+
+import app.expenses_application.controller.ExpenseController;
+import app.expenses_application.dto.ExpenseBatchRequest;
+import app.expenses_application.dto.ExpenseBatchResponse;
+import app.expenses_application.dto.ExpensePage;
+import app.expenses_application.dto.ExpenseRequest;
+import app.expenses_application.dto.ExpenseSearchCriteria;
+import app.expenses_application.dto.LoginRequest;
+import app.expenses_application.dto.LoginResponse;
+import app.expenses_application.dto.PersonDeletionStatus;
+import app.expenses_application.dto.PersonListItem;
+import app.expenses_application.dto.PersonPage;
+import app.expenses_application.dto.QueuedExpenseStatus;
+import app.expenses_application.exception.ExpenseQueueFullException;
+import app.expenses_application.exception.InvalidSortException;
+import app.expenses_application.exception.MandatoryFieldsMissingException;
+import app.expenses_application.exception.NoExpensesFoundException;
+import app.expenses_application.exception.NoPersonFoundException;
+import app.expenses_application.model.Category;
+import app.expenses_application.model.Expense;
+import app.expenses_application.model.ExpenseSort;
+import app.expenses_application.model.Person;
+import app.expenses_application.model.Role;
+import app.expenses_application.repository.DatabaseVendorResolver;
+import app.expenses_application.repository.ExpenseRepository;
+import app.expenses_application.repository.ExpenseSearchRepository;
+import app.expenses_application.repository.ExpenseSeriesRepository;
+import app.expenses_application.repository.MonthlyRollupUpsertRepository;
+import app.expenses_application.repository.PersonRepository;
+import app.expenses_application.service.AuthenticationService;
+import app.expenses_application.service.DataMappingService;
+import app.expenses_application.service.ExpenseBatchService;
+import app.expenses_application.service.ExpenseColumnStore;
+import app.expenses_application.service.ExpenseService;
+import app.expenses_application.service.ExpenseSummaryCache;
+import app.expenses_application.service.ExpenseTextIndex;
+import app.expenses_application.service.ExpenseWriteQueue;
+import app.expenses_application.service.MonthlyRollupService;
+import app.expenses_application.service.PersonDeletionService;
+import app.expenses_application.service.PersonMappingService;
+import app.expenses_application.service.PersonService;
+import app.expenses_application.util.CachingUserDetailsService;
+import app.expenses_application.util.ExpenseVersionRegistry;
+import app.expenses_application.util.JwtService;
+import app.expenses_application.util.TokenRevocationRegistry;
+import app.expenses_application.validator.ExpenseFieldsValidator;
+import app.expenses_application.validator.PersonFieldsValidator;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the SQL statements every expense endpoint sends to an embedded database, using the Hibernate statistics.
+ * The budgets are upper bounds, so an added lookup or an N+1 fetch fails the build.
+ * Tests run outside a test transaction, so the services commit (and flush) as they do in production.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"person.delete.chunk-size=50",
+		"expense.batch.max-size=5",
+		"expense.local-versions.enabled=true",
+		"jwt.secret-key=c2VjcmV0LWtleS1mb3ItdGVzdHMtb25seS0wMTIzNDU2Nzg5YWJjZGVm",
+		"expense.text-index.directory=target/text-index/${random.uuid}"
+})
+@Import({ExpenseController.class, ExpenseService.class, ExpenseBatchService.class, DataMappingService.class, ExpenseFieldsValidator.class,
+		ExpenseSeriesRepository.class, ExpenseSearchRepository.class, MonthlyRollupUpsertRepository.class, DatabaseVendorResolver.class, MonthlyRollupService.class, ExpenseSummaryCache.class, ExpenseTextIndex.class,
+		ExpenseColumnStore.class, ExpenseWriteQueue.class, PersonService.class, PersonDeletionService.class, PersonFieldsValidator.class, PersonMappingService.class,
+		TokenRevocationRegistry.class, ExpenseVersionRegistry.class, AuthenticationService.class, JwtService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatementCountTests {
+
+	private static final LocalDate DATE = LocalDate.of(2024, 1, 15);
+
+	@Autowired
+	private ExpenseController expenseController;
+
+	@Autowired
+	private ExpenseRepository expenseRepository;
+
+	@Autowired
+	private PersonRepository personRepository;
+
+	@Autowired
+	private ExpenseBatchService expenseBatchService;
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private PersonService personService;
+
+	@Autowired
+	private PersonDeletionService personDeletionService;
+
+	@Autowired
+	private AuthenticationService authenticationService;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@MockBean
+	private PasswordEncoder passwordEncoder;
+
+	@MockBean
+	private CachingUserDetailsService userDetailsService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Long personId;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		JdbcTestUtils.deleteFromTables(jdbcTemplate, "monthly_rollup", "expense", "person");
+		personId = personRepository.save(new Person(null, "test@example.com", "password", "Alex", Role.USER, true, null)).getId();
+		// Warms up the pooled id generator and creates the rollup row, so the measured calls hit the steady state
+		for (int i = 0; i < 3; i++) {
+			expenseController.addExpense(new ExpenseRequest(expense(), personId));
+		}
+	}
+
+	@Test
+	void testAddExpenseStatementCount() throws Throwable {
+		// When
+		long statements = countStatements(() -> expenseController.addExpense(new ExpenseRequest(expense(), personId)));
+
+		// Then: insert the expense, upsert the rollup
+		assertEquals(2, statements);
+	}
+
+	@Test
+	void testFirstExpenseOfAMonthCreatesItsRollupWithOneStatement() throws Throwable {
+		// Given
+		Expense first = new Expense(null, Category.HOME, 10.0, DATE.plusMonths(1), null, null);
+		Expense second = new Expense(null, Category.HOME, 2.5, DATE.plusMonths(1), null, null);
+
+		// When
+		long statements = countStatements(() -> expenseController.addExpense(new ExpenseRequest(first, personId)));
+		expenseController.addExpense(new ExpenseRequest(second, personId));
+
+		// Then: insert the expense, upsert the new rollup row, which the second expense increments
+		assertEquals(2, statements);
+		assertEquals(Map.of("TOTAL_CENTS", 1250L, "EXPENSE_COUNT", 2L), jdbcTemplate.queryForMap(
+				"SELECT total_cents, expense_count FROM monthly_rollup WHERE person_id = ? AND category = 'HOME'", personId));
+	}
+
+	@Test
+	void testAddExpenseForMissingPersonStatementCount() throws Throwable {
+		// When
+		long statements = countStatements(() -> assertThrows(NoPersonFoundException.class,
+				() -> expenseController.addExpense(new ExpenseRequest(expense(), personId + 1))));
+
+		// Then: the rejected insert and the lookup confirming the person is missing
+		assertEquals(2, statements);
+		assertEquals(3, expenseRepository.countByPersonId(personId));
+	}
+
+	@Test
+	void testAddBatchAboveTheMaximumIsRejectedWithoutStatements() throws Throwable {
+		// Given
+		List<Expense> expenses = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			expenses.add(expense());
+		}
+
+		// When
+		long statements = countStatements(() -> assertThrows(MandatoryFieldsMissingException.class,
+				() -> expenseController.addExpenses(new ExpenseBatchRequest(expenses, personId))));
+		ExpenseBatchResponse response = (ExpenseBatchResponse) expenseController.addExpenses(new ExpenseBatchRequest(expenses.subList(0, 5), personId)).getBody();
+
+		// Then
+		assertEquals(0, statements);
+		assertEquals(5, response.getAdded());
+		assertEquals(5, response.getIds().size());
+		assertTrue(response.getIds().stream().allMatch(expenseRepository::existsById));
+		assertEquals(8, expenseRepository.countByPersonId(personId));
+	}
+
+	@Test
+	void testDeleteExpenseStatementCount() throws Throwable {
+		// Given
+		Long expenseId = expenseRepository.findByPersonId(personId).get(0).getId();
+
+		// When
+		long statements = countStatements(() -> expenseController.delete(expenseId));
+
+		// Then: read the rollup share, delete the expense, upsert the rollup
+		assertEquals(3, statements);
+		assertFalse(expenseRepository.existsById(expenseId));
+	}
+
+	@Test
+	void testDeleteMissingExpenseStatementCount() throws Throwable {
+		// When
+		long statements = countStatements(() -> assertThrows(NoExpensesFoundException.class, () -> expenseController.delete(-1L)));
+
+		// Then
+		assertEquals(1, statements);
+	}
+
+	@Test
+	void testGetAllStatementCount() throws Throwable {
+		// When
+		long statements = countStatements(() -> expenseController.getAll(personId, get(null)));
+
+		// Then: one projection query, the person is not loaded
+		assertEquals(1, statements);
+	}
+
+	@Test
+	void testGetAllForMissingPersonStatementCount() throws Throwable {
+		// When
+		long statements = countStatements(() -> assertThrows(NoPersonFoundException.class, () -> expenseController.getAll(personId + 1, get(null))));
+
+		// Then: the empty expense query, then the person existence check
+		assertEquals(2, statements);
+	}
+
+	@Test
+	void testGetByCategoryStatementCount() throws Throwable {
+		// When
+		long statements = countStatements(() -> expenseController.getExpensesByCategoryAndPersonId(Category.FOOD.name(), personId));
+
+		// Then: one projection query, the person is not loaded
+		assertEquals(1, statements);
+	}
+
+	@Test
+	void testGetPageStatementCount() throws Throwable {
+		// When
+		long statements = countStatements(() -> expenseController.getPage(personId, null, 2, false));
+
+		// Then: one projection query, the person is not loaded
+		assertEquals(1, statements);
+	}
+
+	@Test
+	void testListingsLoadNoEntities() throws Throwable {
+		// Given
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		// When
+		expenseController.getAll(personId, get(null));
+		expenseController.getPage(personId, null, 2, true);
+
+		// Then
+		assertEquals(0, statistics.getEntityLoadCount());
+	}
+
+	@Test
+	void testSearchPagesThroughMatchesWithOneStatementPerPage() throws Throwable {
+		// Given
+		List<Expense> expenses = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			expenses.add(new Expense(null, i % 2 == 0 ? Category.FOOD : Category.HEALTH, 5.0 + i, DATE.plusDays(i),
+					i % 3 == 0 ? "Weekly 50%_off groceries" : "Pharmacy", null));
+		}
+		expenseBatchService.addAll(personId, expenses);
+		ExpenseSearchCriteria criteria = ExpenseSearchCriteria.builder()
+				.personId(personId)
+				.startDate(DATE.plusDays(1))
+				.endDate(DATE.plusDays(29))
+				.categories(Set.of(Category.FOOD))
+				.minPrice(10.0)
+				.description("50%_OFF")
+				.sort(ExpenseSort.PRICE_DESC)
+				.build();
+		List<Double> prices = new ArrayList<>();
+		ExpensePage[] page = new ExpensePage[1];
+
+		// When
+		long firstStatements = countStatements(() -> page[0] = expenseService.search(criteria, null, 2));
+		page[0].getExpenses().forEach(expense -> prices.add(expense.getPrice()));
+		String cursor = page[0].getNextCursor();
+		long secondStatements = countStatements(() -> page[0] = expenseService.search(criteria, cursor, 2));
+		page[0].getExpenses().forEach(expense -> prices.add(expense.getPrice()));
+
+		// Then: even days that are multiples of 3 from day 6 to day 24, most expensive first
+		assertEquals(1, firstStatements);
+		assertEquals(1, secondStatements);
+		assertEquals(List.of(29.0, 23.0, 17.0, 11.0), prices);
+		assertNull(page[0].getNextCursor());
+	}
+
+	@Test
+	void testDescriptionSearchFollowsAddAndDeleteWithoutStatements() throws Throwable {
+		// Given: the first search loads the partition
+		expenseService.searchDescriptions(personId, "bread", null);
+		Expense netflix = new Expense(null, Category.ENTERTAINMENT, 12.0, DATE, "Netflix", null);
+		expenseController.addExpense(new ExpenseRequest(netflix, personId));
+		Long netflixId = expenseService.searchDescriptions(personId, "netflix", null).get(0);
+		List<Long> afterAdd = new ArrayList<>();
+		List<Long> afterDelete = new ArrayList<>();
+
+		// When
+		long statements = countStatements(() -> afterAdd.addAll(expenseService.searchDescriptions(personId, "net", null)));
+		expenseController.delete(netflixId);
+		afterDelete.addAll(expenseService.searchDescriptions(personId, "netflix", null));
+
+		// Then
+		assertEquals(0, statements);
+		assertEquals(List.of(netflixId), afterAdd);
+		assertEquals(List.of(), afterDelete);
+		assertEquals(3, expenseService.searchDescriptions(personId, "bread", null).size());
+	}
+
+	@Test
+	void testRepeatedTotalIsServedFromCache() throws Throwable {
+		// When
+		long first = countStatements(() -> expenseController.getTotalExpenses(personId, 2024, 1, null, null));
+		long second = countStatements(() -> expenseController.getTotalExpenses(personId, 2024, 1, null, null));
+
+		// Then
+		assertEquals(1, first);
+		assertEquals(0, second);
+	}
+
+	@Test
+	void testConditionalGetIsAnsweredWithoutStatementsUntilExpensesChange() throws Throwable {
+		// Given
+		ServletWebRequest first = get(null);
+		expenseController.getAll(personId, first);
+		String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+		ServletWebRequest revalidation = get(etag);
+
+		// When
+		long statements = countStatements(() -> assertNull(expenseController.getAll(personId, revalidation)));
+		expenseController.addExpense(new ExpenseRequest(expense(), personId));
+		ServletWebRequest afterAdd = get(etag);
+		int afterAddSize = ((List<?>) expenseController.getAll(personId, afterAdd).getBody()).size();
+
+		// Then
+		assertEquals(0, statements);
+		assertEquals(HttpStatus.NOT_MODIFIED.value(), revalidation.getResponse().getStatus());
+		assertEquals("no-cache, private", revalidation.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+		assertEquals(4, afterAddSize);
+		assertNotEquals(etag, afterAdd.getResponse().getHeader(HttpHeaders.ETAG));
+	}
+
+	@Test
+	void testDeletePersonStatementCountDoesNotGrowWithExpenses() throws Throwable {
+		// Given
+		addExpenses(500);
+
+		// When
+		long statements = countStatements(() -> personService.deleteById(personId));
+
+		// Then: read the email, delete rollups, expenses and the person
+		assertEquals(4, statements);
+		assertFalse(personRepository.existsById(personId));
+		assertEquals(0, expenseRepository.countByPersonId(personId));
+	}
+
+	@Test
+	void testLoginStatementCountDoesNotGrowWithExpenses() throws Throwable {
+		// Given
+		addExpenses(500);
+		Mockito.when(passwordEncoder.matches("password", "password")).thenReturn(true);
+		LoginResponse[] response = new LoginResponse[1];
+
+		// When
+		long statements = countStatements(() -> response[0] = authenticationService.authenticate(new LoginRequest("test@example.com", "password")));
+
+		// Then: only the person checked by the authentication provider. The expenses are not loaded
+		assertEquals(1, statements);
+		assertEquals(personId, response[0].getId());
+		assertEquals("Alex", response[0].getName());
+		assertNotNull(response[0].getTokenExpiresAt());
+	}
+
+	@Test
+	void testPersonPageWithExpenseStatsStatementCount() throws Throwable {
+		// Given
+		for (int i = 0; i < 5; i++) {
+			personRepository.save(new Person(null, "other" + i + "@example.com", "password", "Other", Role.USER, true, null));
+		}
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		PersonPage[] page = new PersonPage[1];
+
+		// When
+		long statements = countStatements(() -> page[0] = personService.getPage(0, 4, "expenseTotal", true, true));
+
+		// Then: the page with the aggregated expenses, then the person count. No person is loaded
+		assertEquals(2, statements);
+		assertEquals(0, statistics.getEntityLoadCount());
+		assertEquals(6, page[0].getTotalCount());
+		assertEquals(4, page[0].getPersons().size());
+		PersonListItem first = page[0].getPersons().get(0);
+		assertEquals(personId, first.getId());
+		assertEquals(3, first.getExpenseCount());
+		assertEquals(36.0, first.getExpenseTotal());
+		assertEquals(0, page[0].getPersons().get(1).getExpenseCount());
+	}
+
+	@Test
+	void testPersonPageRejectsUnknownSort() {
+		// When, then
+		assertThrows(InvalidSortException.class, () -> personService.getPage(0, 10, "password", false, false));
+		assertThrows(InvalidSortException.class, () -> personService.getPage(0, 10, "expenseTotal", false, false));
+	}
+
+	@Test
+	void testWriteBehindQueueCommitsBurstInOneTransaction() throws Throwable {
+		// Given: a burst fills the queue before the writer starts
+		ExpenseWriteQueue queue = new ExpenseWriteQueue(expenseBatchService, new ExpenseFieldsValidator(), transactionManager,
+				true, 20, 50, Duration.ofSeconds(5));
+		List<QueuedExpenseStatus> queued = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			queued.add(queue.enqueue(personId, expense()));
+		}
+		assertThrows(ExpenseQueueFullException.class, () -> queue.enqueue(personId, expense()));
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		// When
+		long statements = countStatements(() -> {
+			queue.init();
+			for (QueuedExpenseStatus status : queued) {
+				awaitCommitted(queue, status.getWriteId());
+			}
+		});
+		queue.shutdown();
+
+		// Then: one transaction with the person lookup, the batched insert and the rollup update
+		assertEquals(1, statistics.getSuccessfulTransactionCount());
+		assertTrue(statements <= 4, "statements: " + statements);
+		assertEquals(23, expenseRepository.countByPersonId(personId));
+		assertEquals(1, queue.statistics().getGroupCommits());
+		assertEquals(1, queue.statistics().getRejected());
+		assertNotNull(queue.getStatus(queued.get(19).getWriteId()).getExpenseId());
+	}
+
+	@Test
+	void testAsyncDeletePersonRemovesExpensesInChunks() throws Exception {
+		// Given
+		addExpenses(120);
+
+		// When
+		PersonDeletionStatus status = personDeletionService.start(personId);
+		for (int i = 0; i < 100 && status.getState() == PersonDeletionStatus.State.RUNNING; i++) {
+			Thread.sleep(100);
+			status = personDeletionService.getStatus(status.getDeletionId());
+		}
+
+		// Then
+		assertEquals(PersonDeletionStatus.State.COMPLETED, status.getState());
+		assertEquals(123, status.getExpensesDeleted());
+		assertFalse(personRepository.existsById(personId));
+	}
+
+	private void addExpenses(int count) throws NoPersonFoundException {
+		List<Expense> expenses = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			expenses.add(expense());
+		}
+		expenseBatchService.addAll(personId, expenses);
+	}
+
+	private static void awaitCommitted(ExpenseWriteQueue queue, String writeId) throws Exception {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (queue.getStatus(writeId).getState() == QueuedExpenseStatus.State.QUEUED && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(QueuedExpenseStatus.State.COMMITTED, queue.getStatus(writeId).getState());
+	}
+
+	private long countStatements(Action action) throws Throwable {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		action.run();
+		return statistics.getPrepareStatementCount();
+	}
+
+	private static ServletWebRequest get(String ifNoneMatch) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		if (ifNoneMatch != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+		return new ServletWebRequest(request, new MockHttpServletResponse());
+	}
+
+	private static Expense expense() {
+		return new Expense(null, Category.FOOD, 12.0, DATE, "Bread", null);
+	}
+
+	@FunctionalInterface
+	private interface Action {
+		void run() throws Throwable;
+	}
+
+	@TestConfiguration
+	static class AuthenticationConfig {
+
+		@Bean
+		AuthenticationManager authenticationManager(PersonRepository personRepository, PasswordEncoder passwordEncoder) {
+			DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
+			authProvider.setUserDetailsService(email -> personRepository.findByEmail(email)
+					.orElseThrow(() -> new UsernameNotFoundException("User not found")));
+			authProvider.setPasswordEncoder(passwordEncoder);
+			return new ProviderManager(authProvider);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package app.expenses_application.benchmark;
+
+import app.expenses_application.model.Category;
+import app.expenses_application.model.Expense;
+import app.expenses_application.util.Aggregations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares summing prices over boxed Expense entities with a stream, as the current month total used to,
+ * with the primitive kernels over long cents columns. Run it from the project directory with
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=app.expenses_application.benchmark.MoneyAggregationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyAggregationBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private List<Expense> expenses;
+    private long[] priceCents;
+    private int[] months;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        expenses = new ArrayList<>(size);
+        priceCents = new long[size];
+        months = new int[size];
+        for (int i = 0; i < size; i++) {
+            LocalDate date = start.plusDays(random.nextInt(365 * 5));
+            Expense expense = new Expense((long) i, Category.FOOD, 1 + random.nextInt(100_000) / 100.0, date, null, null);
+            expenses.add(expense);
+            priceCents[i] = expense.getPriceCents();
+            months[i] = (date.getYear() - start.getYear()) * 12 + date.getMonthValue() - 1;
+        }
+    }
+
+    @Benchmark
+    public double streamSum() {
+        return expenses.stream().mapToDouble(Expense::getPrice).sum();
+    }
+
+    @Benchmark
+    public long kernelSum() {
+        return Aggregations.sum(priceCents, 0, size);
+    }
+
+    @Benchmark
+    public Map<Integer, Double> streamSumByMonth() {
+        return expenses.stream().collect(Collectors.groupingBy(
+                expense -> (expense.getDate().getYear() - 2020) * 12 + expense.getDate().getMonthValue() - 1,
+                Collectors.summingDouble(Expense::getPrice)));
+    }
+
+    @Benchmark
+    public long[] kernelSumByMonth() {
+        long[] totals = new long[60];
+        Aggregations.sumByBucket(priceCents, months, 0, size, totals);
+        return totals;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyAggregationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}